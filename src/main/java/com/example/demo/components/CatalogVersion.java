@@ -0,0 +1,45 @@
+package com.example.demo.components;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cluster-wide version of the product catalog, kept as a Redis counter.
+ * Only catalog edits ({@code ProductService} create / update / delete) bump it; stock changes
+ * from orders do not, so a pod polling it never reloads just because something was sold.
+ * A bump is also published on {@value #CHANGED_TOPIC} so other pods reload without waiting for the poll.
+ */
+@Component
+@Slf4j
+public class CatalogVersion {
+    public static final String CHANGED_TOPIC = "catalog:changed";
+    private static final String VERSION_KEY = "catalog:version";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    public CatalogVersion(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    //null khi Redis không trả lời: snapshot chỉ còn hết hạn theo max-age
+    public Long current() {
+        try {
+            Object version = redisTemplate.opsForValue().get(VERSION_KEY);
+            return version instanceof Number number ? number.longValue() : 0L;
+        } catch (Exception e) {
+            log.debug("Cannot read catalog version: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    //gọi sau khi commit thay đổi catalog
+    public void bump() {
+        try {
+            Long version = redisTemplate.opsForValue().increment(VERSION_KEY);
+            redisTemplate.convertAndSend(CHANGED_TOPIC, String.valueOf(version));
+        } catch (Exception e) {
+            log.warn("Cannot bump catalog version, pods pick the change up at max-age: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.components;
+
+import com.example.demo.models.Category;
+import com.example.demo.repositories.CategoryRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable in-process snapshot of all categories. Reloaded atomically after every
+ * {@code CategoryService} write, on the {@value #CHANGED_TOPIC} Redis channel when another pod
+ * writes, and periodically as a safety net for missed messages.
+ * The ETag is a hash of the content, so every pod answers with the same value.
+ */
+@Component
+@Slf4j
+public class CategoryDictionary implements MessageListener {
+    public static final String CHANGED_TOPIC = "categories:changed";
+
+    private final CategoryRepository categoryRepository;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(List<Category> categories, Map<Long, Category> categoriesById, String eTag) {
+    }
+
+    public CategoryDictionary(CategoryRepository categoryRepository,
+                              RedisTemplate<String, Object> redisTemplate,
+                              RedisMessageListenerContainer redisMessageListenerContainer) {
+        this.categoryRepository = categoryRepository;
+        this.redisTemplate = redisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANGED_TOPIC));
+    }
+
+    public List<Category> getAll() {
+        return current().categories();
+    }
+
+    public Optional<Category> findById(Long id) {
+        return Optional.ofNullable(current().categoriesById().get(id));
+    }
+
+    public String getETag() {
+        return current().eTag();
+    }
+
+    //gọi sau khi ghi category: nạp lại local rồi báo các pod khác
+    public void publishChange() {
+        refresh();
+        try {
+            redisTemplate.convertAndSend(CHANGED_TOPIC, "refresh");
+        } catch (Exception e) {
+            log.warn("Cannot publish category change, other pods refresh on schedule: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        refresh();
+    }
+
+    //query MySQL trong monitor: từ Java 24 (JEP 491) virtual thread chờ ở đây không pin carrier
+    @Scheduled(fixedDelayString = "${category.dictionary.refresh-ms:300000}")
+    public synchronized void refresh() {
+        //copy ra object thường để snapshot không giữ entity đang được Hibernate quản lý
+        List<Category> categories = categoryRepository.findAll().stream()
+                .map(category -> Category.builder()
+                        .id(category.getId())
+                        .name(category.getName())
+                        .build())
+                .toList();
+        Map<Long, Category> categoriesById = categories.stream()
+                .collect(Collectors.toUnmodifiableMap(Category::getId, Function.identity()));
+        snapshot = new Snapshot(categories, categoriesById, eTagOf(categories));
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            refresh();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    private static String eTagOf(List<Category> categories) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Category category : categories) {
+                digest.update((category.getId() + ":" + category.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
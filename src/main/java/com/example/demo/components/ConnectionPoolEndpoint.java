@@ -0,0 +1,38 @@
+package com.example.demo.components;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@Endpoint(id = "pools")
+@RequiredArgsConstructor
+public class ConnectionPoolEndpoint {
+    private final List<HikariDataSource> dataSources;
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> pools() {
+        Map<String, Map<String, Object>> pools = new LinkedHashMap<>();
+        for (HikariDataSource dataSource : dataSources) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maximumPoolSize", dataSource.getMaximumPoolSize());
+            stats.put("readOnly", dataSource.isReadOnly());
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            if (pool != null) {
+                stats.put("active", pool.getActiveConnections());
+                stats.put("idle", pool.getIdleConnections());
+                stats.put("pending", pool.getThreadsAwaitingConnection());
+                stats.put("total", pool.getTotalConnections());
+            }
+            pools.put(dataSource.getPoolName(), stats);
+        }
+        return pools;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.components;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU of small, hot image files kept in memory in front of the upload directory.
+ * Files larger than {@code image.cache.max-entry-bytes} are never cached; they are streamed from disk.
+ */
+@Component
+public class ImageCache {
+    private final long maxEntryBytes;
+    private final long maxTotalBytes;
+    private final LinkedHashMap<Path, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    public ImageCache(@Value("${image.cache.max-entry-bytes:262144}") long maxEntryBytes,
+                      @Value("${image.cache.max-total-bytes:33554432}") long maxTotalBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    public byte[] get(Path path) throws IOException {
+        synchronized (entries) {
+            byte[] cached = entries.get(path);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (Files.size(path) > maxEntryBytes) {
+            return null;
+        }
+        // đọc file ngoài lock, 2 request cùng miss chỉ tốn thêm 1 lần đọc
+        byte[] bytes = Files.readAllBytes(path);
+        synchronized (entries) {
+            byte[] previous = entries.put(path, bytes);
+            totalBytes += bytes.length - (previous == null ? 0 : previous.length);
+            Iterator<Map.Entry<Path, byte[]>> iterator = entries.entrySet().iterator();
+            while (totalBytes > maxTotalBytes && iterator.hasNext()) {
+                Map.Entry<Path, byte[]> eldest = iterator.next();
+                totalBytes -= eldest.getValue().length;
+                iterator.remove();
+            }
+        }
+        return bytes;
+    }
+
+    public void evict(Path path) {
+        synchronized (entries) {
+            byte[] removed = entries.remove(path);
+            if (removed != null) {
+                totalBytes -= removed.length;
+            }
+        }
+    }
+}
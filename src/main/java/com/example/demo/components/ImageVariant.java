@@ -0,0 +1,33 @@
+package com.example.demo.components;
+
+import java.util.Arrays;
+
+public enum ImageVariant {
+    THUMB("thumb", 200),
+    CARD("card", 480),
+    FULL("full", 1200),
+    ORIGINAL("original", 0);
+
+    private final String code;
+    private final int maxSize;//cạnh dài nhất (px), 0 = giữ nguyên file gốc
+
+    ImageVariant(String code, int maxSize) {
+        this.code = code;
+        this.maxSize = maxSize;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public static ImageVariant fromCode(String code) {
+        return Arrays.stream(values())
+                .filter(variant -> variant.code.equalsIgnoreCase(code))
+                .findFirst()
+                .orElse(ORIGINAL);
+    }
+}
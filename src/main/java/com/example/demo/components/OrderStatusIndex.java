@@ -0,0 +1,185 @@
+package com.example.demo.components;
+
+import com.example.demo.models.OrderStatus;
+import com.example.demo.repositories.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-process index of open orders (not delivered / cancelled) by status, oldest first.
+ * Each entry is an (entered-status time, order id) pair, so "the next N orders waiting in X"
+ * and "orders in X older than T" read only the head of one sorted set.
+ * Transitions committed on this pod update it immediately; a periodic reload from the database
+ * picks up transitions made on other pods. Callers must re-check the status in the database
+ * before acting on an id, see {@code OrderStatusService#claimNext}: workers take ids out of the
+ * index with {@link #claim}, so two workers on one pod never get the same head, and ids found stale
+ * in the database are already gone instead of blocking the head until the next reload.
+ */
+@Component
+@Slf4j
+public class OrderStatusIndex {
+    private final OrderRepository orderRepository;
+    private volatile State state = State.empty();
+
+    private record Entry(long since, long orderId) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int bySince = Long.compare(since, other.since);
+            return bySince != 0 ? bySince : Long.compare(orderId, other.orderId);
+        }
+    }
+
+    private record Position(OrderStatus status, Entry entry) {
+    }
+
+    //đơn đã lấy ra khỏi index bởi claim, đủ thông tin để trả lại nếu transaction rollback
+    public record Claimed(long orderId, OrderStatus status, long since) {
+    }
+
+    private record State(Map<OrderStatus, ConcurrentSkipListSet<Entry>> byStatus,
+                         ConcurrentHashMap<Long, Position> positions) {
+        static State empty() {
+            Map<OrderStatus, ConcurrentSkipListSet<Entry>> byStatus = new EnumMap<>(OrderStatus.class);
+            for (OrderStatus status : OrderStatus.values()) {
+                if (!status.isTerminal()) {
+                    byStatus.put(status, new ConcurrentSkipListSet<>());
+                }
+            }
+            return new State(byStatus, new ConcurrentHashMap<>());
+        }
+
+        void put(long orderId, OrderStatus status, long since) {
+            //compute khóa theo orderId nên 2 lần chuyển trạng thái cùng đơn không chen nhau
+            positions.compute(orderId, (id, old) -> {
+                if (old != null) {
+                    byStatus.get(old.status()).remove(old.entry());
+                }
+                if (status.isTerminal()) {
+                    return null;
+                }
+                Entry entry = new Entry(since, orderId);
+                byStatus.get(status).add(entry);
+                return new Position(status, entry);
+            });
+        }
+
+        //không đè lên vị trí mới hơn (reload hoặc chuyển trạng thái xảy ra sau khi claim)
+        void putIfAbsent(long orderId, OrderStatus status, long since) {
+            positions.computeIfAbsent(orderId, id -> {
+                Entry entry = new Entry(since, id);
+                byStatus.get(status).add(entry);
+                return new Position(status, entry);
+            });
+        }
+    }
+
+    public OrderStatusIndex(OrderRepository orderRepository) {
+        this.orderRepository = orderRepository;
+    }
+
+    //đơn chuyển sang trạng thái kết thúc thì bị bỏ khỏi index
+    public void put(Long orderId, OrderStatus status, LocalDateTime since) {
+        state.put(orderId, status, toEpochMillis(since));
+    }
+
+    public void remove(Long orderId) {
+        State current = state;
+        Position old = current.positions().remove(orderId);
+        if (old != null) {
+            current.byStatus().get(old.status()).remove(old.entry());
+        }
+    }
+
+    /**
+     * Takes up to {@code limit} of the oldest orders in {@code status} (entered before
+     * {@code olderThan}, null = any age) out of the index. Removal is per id and atomic, so
+     * concurrent callers get disjoint batches; cost is O(limit + ids taken by others meanwhile).
+     */
+    public List<Claimed> claim(OrderStatus status, LocalDateTime olderThan, int limit) {
+        State current = state;
+        ConcurrentSkipListSet<Entry> entries = current.byStatus().get(status);
+        if (entries == null || limit <= 0) {
+            return List.of();
+        }
+        long cutoff = olderThan == null ? Long.MAX_VALUE : toEpochMillis(olderThan);
+        List<Claimed> claimed = new ArrayList<>(Math.min(limit, 256));
+        for (Entry entry : entries) {
+            if (entry.since() >= cutoff || claimed.size() >= limit) {
+                break;
+            }
+            Position position = current.positions().get(entry.orderId());
+            //remove(key, value): chỉ 1 worker thắng khi 2 worker cùng thấy entry này
+            if (position != null && position.entry().equals(entry)
+                    && current.positions().remove(entry.orderId(), position)) {
+                entries.remove(entry);
+                claimed.add(new Claimed(entry.orderId(), status, entry.since()));
+            }
+        }
+        return claimed;
+    }
+
+    //trả lại các đơn đã claim mà trạng thái trong DB không đổi (transaction rollback)
+    public void restore(List<Claimed> claimed) {
+        State current = state;
+        claimed.forEach(claim -> current.putIfAbsent(claim.orderId(), claim.status(), claim.since()));
+    }
+
+    /**
+     * Oldest orders currently in {@code status} that entered it before {@code olderThan}
+     * (null = any age), at most {@code limit}. Cost is O(limit), not O(orders in status).
+     */
+    public List<Long> oldest(OrderStatus status, LocalDateTime olderThan, int limit) {
+        ConcurrentSkipListSet<Entry> entries = state.byStatus().get(status);
+        if (entries == null || limit <= 0) {
+            return List.of();
+        }
+        long cutoff = olderThan == null ? Long.MAX_VALUE : toEpochMillis(olderThan);
+        List<Long> orderIds = new ArrayList<>(Math.min(limit, 256));
+        for (Entry entry : entries) {
+            if (entry.since() >= cutoff || orderIds.size() >= limit) {
+                break;
+            }
+            orderIds.add(entry.orderId());
+        }
+        return orderIds;
+    }
+
+    public int size() {
+        return state.positions().size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${orders.status-index.refresh-ms:60000}",
+            fixedDelayString = "${orders.status-index.refresh-ms:60000}")
+    public void reload() {
+        List<String> openStatuses = Arrays.stream(OrderStatus.values())
+                .filter(status -> !status.isTerminal())
+                .map(OrderStatus::getCode)
+                .toList();
+        State loaded = State.empty();
+        for (OrderRepository.StatusEntry row : orderRepository.findStatusEntries(openStatuses)) {
+            OrderStatus.fromCode(row.getStatus()).ifPresent(status -> loaded.put(
+                    row.getId(), status, row.getSince() == null ? 0 : row.getSince() * 1000));
+        }
+        //chuyển trạng thái xảy ra trong lúc đang nạp sẽ được lần reload sau sửa lại
+        state = loaded;
+        log.debug("Order status index reloaded with {} open orders", loaded.positions().size());
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
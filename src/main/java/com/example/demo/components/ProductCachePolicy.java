@@ -0,0 +1,116 @@
+package com.example.demo.components;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which product listing pages may enter Redis and for how long. Keyword is free user
+ * input, so a page is only cached when the keyword is short, the category exists, the page is
+ * shallow and small, and the keyword has been asked for at least {@code admit-after} times
+ * recently on this pod (TinyLFU-style: a count-min sketch whose counters are halved periodically
+ * so old popularity fades). Browsing without a keyword is always admitted.
+ */
+@Component
+public class ProductCachePolicy {
+    private final CategoryDictionary categoryDictionary;
+    private final int maxKeywordLength;
+    private final int maxPage;
+    private final int maxPageSize;
+    private final int admitAfter;
+    private final long freshMillis;
+    private final long keywordFreshMillis;
+    private final double ttlJitter;
+    private final FrequencySketch sketch = new FrequencySketch(4096);
+
+    public ProductCachePolicy(CategoryDictionary categoryDictionary,
+                              @Value("${product.cache.max-keyword-length:50}") int maxKeywordLength,
+                              @Value("${product.cache.max-page:10}") int maxPage,
+                              @Value("${product.cache.max-page-size:50}") int maxPageSize,
+                              @Value("${product.cache.admit-after:3}") int admitAfter,
+                              @Value("${product.cache.fresh-seconds:60}") long freshSeconds,
+                              @Value("${product.cache.keyword-fresh-seconds:30}") long keywordFreshSeconds,
+                              @Value("${product.cache.ttl-jitter:0.2}") double ttlJitter) {
+        this.categoryDictionary = categoryDictionary;
+        this.maxKeywordLength = maxKeywordLength;
+        this.maxPage = maxPage;
+        this.maxPageSize = maxPageSize;
+        this.admitAfter = admitAfter;
+        this.freshMillis = Duration.ofSeconds(freshSeconds).toMillis();
+        this.keywordFreshMillis = Duration.ofSeconds(keywordFreshSeconds).toMillis();
+        this.ttlJitter = ttlJitter;
+    }
+
+    //ngoài giới hạn thì không đọc cũng không ghi Redis, đi thẳng MySQL
+    public boolean isCacheable(String keyword, Long categoryId, int page, int pageSize) {
+        return (keyword == null || keyword.length() <= maxKeywordLength)
+                && (categoryId == null || categoryId == 0 || categoryDictionary.findById(categoryId).isPresent())
+                && page <= maxPage
+                && pageSize <= maxPageSize;
+    }
+
+    //gọi mỗi request để đếm tần suất; true = keyword đủ phổ biến để ghi vào cache
+    public boolean admit(String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return true;
+        }
+        return sketch.increment(keyword) >= admitAfter;
+    }
+
+    //trang tìm kiếm sống ngắn hơn trang duyệt; jitter ±ttlJitter để các key ghi cùng lúc không hết hạn cùng lúc
+    public Duration freshTtl(String keyword) {
+        long base = keyword == null || keyword.isBlank() ? freshMillis : keywordFreshMillis;
+        double factor = 1 + ttlJitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+        return Duration.ofMillis(Math.max(1000, (long) (base * factor)));
+    }
+
+    /**
+     * Count-min sketch with 4 rows of saturating counters. After {@code 10 * width} increments
+     * every counter is halved, so the estimate reflects recent requests only.
+     */
+    private static final class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final int[][] counters;
+        private final int mask;
+        private final int resetAfter;
+        private int additions;
+
+        FrequencySketch(int width) {
+            this.counters = new int[ROWS][width];
+            this.mask = width - 1;
+            this.resetAfter = width * 10;
+        }
+
+        //trả về ước lượng số lần đã gặp, tính cả lần này; lock chỉ bao phép tính trên mảng, không I/O
+        synchronized int increment(String item) {
+            int hash = item.hashCode();
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < ROWS; row++) {
+                int index = indexOf(hash, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                }
+                estimate = Math.min(estimate, counters[row][index]);
+            }
+            if (++additions >= resetAfter) {
+                for (int[] row : counters) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                additions = 0;
+            }
+            return estimate;
+        }
+
+        private int indexOf(int hash, int row) {
+            int mixed = (hash ^ (hash >>> 16)) * SEEDS[row];
+            return (mixed ^ (mixed >>> 15)) & mask;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.components;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Polls the replica's replication status; reads are only routed to it while
+ * the lag stays under {@code replica.datasource.max-lag-seconds}. An empty
+ * {@code SHOW REPLICA STATUS} or a null {@code Seconds_Behind_Source} counts as unhealthy.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "replica.datasource.enabled", havingValue = "true")
+public class ReplicaLagMonitor {
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final long maxLagSeconds;
+    private volatile boolean available = false;
+    private volatile Long lagSeconds;
+
+    public ReplicaLagMonitor(@Qualifier("replicaDataSource") HikariDataSource replicaDataSource,
+                             @Value("${replica.datasource.max-lag-seconds:5}") long maxLagSeconds) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.maxLagSeconds = maxLagSeconds;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public Long getLagSeconds() {
+        return lagSeconds;
+    }
+
+    @Scheduled(fixedDelayString = "${replica.datasource.lag-check-interval-ms:1000}")
+    public void checkLag() {
+        boolean wasAvailable = available;
+        try {
+            //Seconds_Behind_Source = NULL khi replication bị dừng
+            List<Long> rows = replicaJdbcTemplate.query("SHOW REPLICA STATUS",
+                    (rs, rowNum) -> {
+                        long lag = rs.getLong("Seconds_Behind_Source");
+                        return rs.wasNull() ? null : lag;
+                    });
+            //không có dòng nào: host không (còn) là replica, không biết độ trễ nên coi như không dùng được
+            lagSeconds = rows.isEmpty() ? null : rows.get(0);
+            available = lagSeconds != null && lagSeconds <= maxLagSeconds;
+        } catch (Exception e) {
+            lagSeconds = null;
+            available = false;
+            if (wasAvailable) {
+                log.warn("Replica lag check failed: {}", e.getMessage());
+            }
+        }
+        if (wasAvailable != available) {
+            log.warn("Replica {} (lag={}s, max={}s)",
+                    available ? "back in rotation" : "taken out of rotation", lagSeconds, maxLagSeconds);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo.configurations;
+
+import com.example.demo.components.ReplicaLagMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseDataSource;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Two Hikari pools against the same database: {@code primary} for everything,
+ * and a small read-only {@code catalog} pool that only serves catalog GET requests
+ * (see {@link com.example.demo.filters.CatalogReadFilter}), so long checkout
+ * transactions cannot starve browsing.
+ * With {@code replica.datasource.enabled=true} a third pool points at a MySQL replica and
+ * takes catalog reads and {@code @Transactional(readOnly = true)} work while its lag is acceptable
+ * (see {@link RoutingDataSource} and {@link ReplicaLagMonitor}).
+ */
+@Configuration
+public class DataSourceConfig {
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties primaryDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @LiquibaseDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties primaryDataSourceProperties) {
+        return primaryDataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+    @Bean
+    @ConfigurationProperties("catalog.datasource.hikari")
+    public HikariDataSource catalogDataSource(DataSourceProperties primaryDataSourceProperties) {
+        HikariDataSource dataSource = primaryDataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "replica.datasource.enabled", havingValue = "true")
+    @ConfigurationProperties("replica.datasource")
+    public DataSourceProperties replicaDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "replica.datasource.enabled", havingValue = "true")
+    @ConfigurationProperties("replica.datasource.hikari")
+    public HikariDataSource replicaDataSource(
+            @Qualifier("replicaDataSourceProperties") DataSourceProperties replicaDataSourceProperties) {
+        HikariDataSource dataSource = replicaDataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                 @Qualifier("catalogDataSource") HikariDataSource catalogDataSource,
+                                 @Qualifier("replicaDataSource") ObjectProvider<HikariDataSource> replicaDataSource,
+                                 ObjectProvider<ReplicaLagMonitor> replicaLagMonitor) {
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(DataSourceType.PRIMARY, primaryDataSource);
+        targetDataSources.put(DataSourceType.CATALOG, catalogDataSource);
+        HikariDataSource replica = replicaDataSource.getIfAvailable();
+        ReplicaLagMonitor monitor = replicaLagMonitor.getIfAvailable();
+        if (replica != null && monitor != null) {
+            targetDataSources.put(DataSourceType.REPLICA, replica);
+        }
+        RoutingDataSource routingDataSource = new RoutingDataSource(
+                () -> replica != null && monitor != null && monitor.isAvailable());
+        routingDataSource.setTargetDataSources(targetDataSources);
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+        // chỉ lấy connection khi thực sự chạy SQL, lúc đó key định tuyến đã được set
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
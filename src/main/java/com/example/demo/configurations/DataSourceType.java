@@ -0,0 +1,7 @@
+package com.example.demo.configurations;
+
+public enum DataSourceType {
+    PRIMARY,
+    CATALOG,
+    REPLICA
+}
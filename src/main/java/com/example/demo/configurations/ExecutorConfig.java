@@ -0,0 +1,39 @@
+package com.example.demo.configurations;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ExecutorConfig {
+    @Value("${image.upload.concurrency:4}")
+    private int imageUploadConcurrency;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    //giới hạn số file ghi đĩa song song; khi hàng đợi đầy thì thread của request tự ghi
+    @Bean
+    public TaskExecutor imageUploadExecutor() {
+        if (virtualThreads) {
+            //virtual thread không cần pool, chỉ giới hạn số file ghi cùng lúc (vượt quá thì caller chờ)
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("image-upload-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(imageUploadConcurrency);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(imageUploadConcurrency);
+        executor.setMaxPoolSize(imageUploadConcurrency);
+        executor.setQueueCapacity(imageUploadConcurrency * 10);
+        executor.setThreadNamePrefix("image-upload-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.configurations;
+
+import com.example.demo.responses.ProductResponse;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * ObjectMapper for HTTP responses, built from spring.jackson.* (non_null inclusion) instead of
+ * reusing redisObjectMapper. Adds Blackbird accessors and the {@value #SPARSE_FIELDS_FILTER}
+ * filter used by {@link com.example.demo.components.SparseFieldsAdvice} for {@code ?fields=}.
+ */
+@Configuration
+public class JacksonConfig {
+    public static final String SPARSE_FIELDS_FILTER = "sparseFields";
+
+    @JsonFilter(SPARSE_FIELDS_FILTER)
+    private interface SparseFieldsMixin {
+    }
+
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer sparseFieldsCustomizer() {
+        // mặc định trả đủ field, SparseFieldsAdvice thay filter khi request có ?fields=
+        return builder -> builder
+                .mixIn(ProductResponse.class, SparseFieldsMixin.class)
+                .filters(new SimpleFilterProvider()
+                        .addFilter(SPARSE_FIELDS_FILTER, SimpleBeanPropertyFilter.serializeAll())
+                        .setFailOnUnknownId(false));
+    }
+
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(
+            Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2HttpMessageConverter(builder.build());
+    }
+}
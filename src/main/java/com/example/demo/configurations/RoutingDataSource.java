@@ -0,0 +1,31 @@
+package com.example.demo.configurations;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Chooses the pool when a connection is actually fetched (wrapped in a
+ * LazyConnectionDataSourceProxy, so the transaction's read-only flag is known by then).
+ * Catalog requests and read-only transactions go to the replica while it is caught up;
+ * otherwise catalog requests fall back to the catalog pool and everything else to the primary.
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+    private final BooleanSupplier replicaAvailable;
+
+    public RoutingDataSource(BooleanSupplier replicaAvailable) {
+        this.replicaAvailable = replicaAvailable;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        DataSourceType requested = DataSourceContextHolder.get();
+        boolean readOnly = requested == DataSourceType.CATALOG
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (readOnly && replicaAvailable.getAsBoolean()) {
+            return DataSourceType.REPLICA;
+        }
+        return requested == DataSourceType.CATALOG ? DataSourceType.CATALOG : DataSourceType.PRIMARY;
+    }
+}
@@ -48,7 +48,8 @@ public class WebSecurityConfig {
                             .requestMatchers(
                                     String.format("%s/users/register", apiPrefix),
                                     String.format("%s/users/login", apiPrefix),
-                                    String.format("%s/actuator/**", apiPrefix),
+                                    String.format("%s/actuator/health", apiPrefix),
+                                    String.format("%s/actuator/health/**", apiPrefix),
                                     String.format("%s/healthcheck/**", apiPrefix),
 
                                     "/api-docs",
@@ -62,9 +63,15 @@ public class WebSecurityConfig {
                                     "/swagger-ui/index.html",
                                     "/webjars/swagger-ui/**"
                             ).permitAll()
+                            //metrics, pools: số liệu pool / leak / Micrometer chỉ cho admin
+                            .requestMatchers(
+                                    String.format("%s/actuator/**", apiPrefix)).hasAnyRole(Role.ADMIN)
                             .requestMatchers(GET,
                                     String.format("%s/roles**", apiPrefix)).permitAll()
 
+                            .requestMatchers(GET,
+                                    String.format("%s/catalog/**", apiPrefix)).permitAll()
+
                             .requestMatchers(GET,
                                     String.format("%s/categories/**", apiPrefix)).permitAll()
                             .requestMatchers(POST,
@@ -88,6 +95,8 @@ public class WebSecurityConfig {
                                     String.format("%s/products/**", apiPrefix)).hasAnyRole(Role.ADMIN)
 
 
+                            .requestMatchers(POST,
+                                    String.format("%s/orders/status/**", apiPrefix)).hasRole(Role.ADMIN)
                             .requestMatchers(POST,
                                     String.format("%s/orders/**", apiPrefix)).hasAnyRole(Role.USER)
                             .requestMatchers(GET,
@@ -0,0 +1,83 @@
+package com.example.demo.controllers;
+
+import com.example.demo.exceptions.InvalidParamException;
+import com.example.demo.models.SalesRollup;
+import com.example.demo.responses.ObjectResponse;
+import com.example.demo.responses.SalesRollupResponse;
+import com.example.demo.responses.SalesSummaryResponse;
+import com.example.demo.services.ISalesAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("${api.prefix}/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+    private final ISalesAnalyticsService salesAnalyticsService;
+
+    @GetMapping("/revenue")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ObjectResponse> getRevenue(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        SalesSummaryResponse summary = salesAnalyticsService.getSummary(from, to);
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Get revenue successfully")
+                .status(HttpStatus.OK)
+                .data(summary)
+                .build());
+    }
+
+    @GetMapping("/rollups")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ObjectResponse> getRollups(
+            @RequestParam(defaultValue = SalesRollup.DAILY) String granularity,
+            @RequestParam(defaultValue = SalesRollup.DIMENSION_STATUS) String dimension,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        List<SalesRollupResponse> rollups = salesAnalyticsService.getRollups(
+                granularity.toUpperCase(), dimension.toLowerCase(), from, to);
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Get sales rollups successfully")
+                .status(HttpStatus.OK)
+                .data(rollups)
+                .build());
+    }
+
+    @GetMapping("/top-products")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ObjectResponse> getTopProducts(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "10") int limit
+    ) throws InvalidParamException {
+        List<SalesRollupResponse> topProducts = salesAnalyticsService.getTopProducts(date, limit);
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Get top products successfully")
+                .status(HttpStatus.OK)
+                .data(topProducts)
+                .build());
+    }
+
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ObjectResponse> rebuild(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        int rows = salesAnalyticsService.rebuildDaily(from, to);
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message(String.format("Rebuilt %d sales rollups", rows))
+                .status(HttpStatus.OK)
+                .data(rows)
+                .build());
+    }
+}
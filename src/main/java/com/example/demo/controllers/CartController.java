@@ -0,0 +1,119 @@
+package com.example.demo.controllers;
+
+import com.example.demo.dtos.CartItemDTO;
+import com.example.demo.dtos.OrderDTO;
+import com.example.demo.models.User;
+import com.example.demo.responses.CartResponse;
+import com.example.demo.responses.ObjectResponse;
+import com.example.demo.responses.OrderResponse;
+import com.example.demo.services.ICartService;
+import com.example.demo.services.IIdempotencyService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.util.DigestUtils;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@RestController
+@RequestMapping("${api.prefix}/carts")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ROLE_ADMIN') or hasRole('ROLE_USER')")
+public class CartController {
+    private final ICartService cartService;
+    private final IIdempotencyService idempotencyService;
+
+    @GetMapping("")
+    public ResponseEntity<ObjectResponse> getCart(@AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Get cart successfully")
+                .status(HttpStatus.OK)
+                .data(cartService.getCart(user.getId()))
+                .build());
+    }
+
+    @PostMapping("/items")
+    public ResponseEntity<ObjectResponse> addItem(
+            @AuthenticationPrincipal User user,
+            @RequestBody CartItemDTO cartItemDTO
+    ) throws Exception {
+        CartResponse cart = cartService.addItem(user.getId(), cartItemDTO);
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Add item to cart successfully")
+                .status(HttpStatus.OK)
+                .data(cart)
+                .build());
+    }
+
+    @PutMapping("/items/{productId}")
+    public ResponseEntity<ObjectResponse> updateItem(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long productId,
+            @RequestBody CartItemDTO cartItemDTO
+    ) throws Exception {
+        CartResponse cart = cartService.updateItem(user.getId(), productId, cartItemDTO.getQuantity());
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Update cart item successfully")
+                .status(HttpStatus.OK)
+                .data(cart)
+                .build());
+    }
+
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<ObjectResponse> removeItem(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long productId
+    ) {
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Remove cart item successfully")
+                .status(HttpStatus.OK)
+                .data(cartService.removeItem(user.getId(), productId))
+                .build());
+    }
+
+    @DeleteMapping("")
+    public ResponseEntity<ObjectResponse> clearCart(@AuthenticationPrincipal User user) {
+        cartService.clearCart(user.getId());
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Clear cart successfully")
+                .status(HttpStatus.OK)
+                .build());
+    }
+
+    //body chỉ cần thông tin giao hàng, cart_items/user_id/total_money lấy từ giỏ trên server
+    @PostMapping("/checkout")
+    public ResponseEntity<ObjectResponse> checkout(
+            @AuthenticationPrincipal User user,
+            @Valid @RequestBody OrderDTO orderDTO,
+            BindingResult result,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
+    ) throws Exception {
+        if (result.hasErrors()) {
+            List<String> errorMess = result.getFieldErrors().stream().map(FieldError::getDefaultMessage).toList();
+            return ResponseEntity.badRequest().body(ObjectResponse.builder()
+                    .message(errorMess.toString())
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
+        // fingerprint lấy trước khi checkout điền cart_items vào orderDTO
+        String fingerprint = DigestUtils.md5DigestAsHex(orderDTO.toString().getBytes(StandardCharsets.UTF_8));
+        OrderResponse order = idempotencyService.executeAsync(
+                "cart-checkout:" + user.getId(),
+                idempotencyKey,
+                fingerprint,
+                OrderResponse.class,
+                () -> cartService.checkout(user.getId(), orderDTO).thenApply(OrderResponse::fromOrderWithDetails));
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Insert order successfully")
+                .status(HttpStatus.CREATED)
+                .data(order)
+                .build());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.controllers;
+
+import com.example.demo.exceptions.DataNotFoundException;
+import com.example.demo.models.Category;
+import com.example.demo.responses.ObjectResponse;
+import com.example.demo.responses.ProductListResponse;
+import com.example.demo.responses.ProductResponse;
+import com.example.demo.services.ICatalogService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+//API chỉ đọc cho trang duyệt sản phẩm, phục vụ từ snapshot trong bộ nhớ (không JDBC/Redis)
+//ghi vẫn đi qua ProductController/CategoryController; ảnh dùng /products/images/{imageName}
+@RestController
+@RequestMapping("${api.prefix}/catalog")
+@RequiredArgsConstructor
+public class CatalogController {
+    private final ICatalogService catalogService;
+
+    @GetMapping("/products")
+    public ResponseEntity<ObjectResponse> getProducts(
+            @RequestParam(defaultValue = "") String keyword,
+            @RequestParam(defaultValue = "0", name = "category_id") Long categoryId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        ProductListResponse productListResponse = catalogService.getProducts(keyword, categoryId, page, limit);
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Get products successfully")
+                .status(HttpStatus.OK)
+                .data(productListResponse)
+                .build());
+    }
+
+    @GetMapping("/products/{id}")
+    public ResponseEntity<ObjectResponse> getProductById(
+            @PathVariable("id") Long productId
+    ) throws DataNotFoundException {
+        ProductResponse productResponse = catalogService.getProduct(productId);
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .data(productResponse)
+                .message("Get detail product successfully")
+                .status(HttpStatus.OK)
+                .build());
+    }
+
+    @GetMapping("/categories")
+    public ResponseEntity<ObjectResponse> getCategories() {
+        List<Category> categories = catalogService.getCategories();
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Get list of categories successfully")
+                .status(HttpStatus.OK)
+                .data(categories)
+                .build());
+    }
+}
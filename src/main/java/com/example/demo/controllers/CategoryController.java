@@ -1,5 +1,6 @@
 package com.example.demo.controllers;
 
+import com.example.demo.components.CategoryDictionary;
 import com.example.demo.components.LocalizationUtils;
 import com.example.demo.dtos.CategoryDTO;
 import com.example.demo.models.Category;
@@ -9,12 +10,14 @@ import com.example.demo.services.ICategoryService;
 import com.example.demo.untils.MessageKeys;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -24,6 +27,7 @@ import java.util.List;
 public class CategoryController {
     private final ICategoryService categoryService;
     private final LocalizationUtils localizationUtils;
+    private final CategoryDictionary categoryDictionary;
 
     @PostMapping("")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -49,15 +53,38 @@ public class CategoryController {
 
     @GetMapping("")
     public ResponseEntity<ObjectResponse> getAllCategories(
-            @RequestParam("page") int page,
-            @RequestParam("limit") int limit
+            @RequestParam(value = "page", required = false) Integer page,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            WebRequest webRequest
     ) {
+        // lấy ETag trước danh sách: nếu snapshot đổi ở giữa thì client chỉ phải tải lại lần sau
+        String eTag = pagedETag(categoryDictionary.getETag(), page, limit);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
         List<Category> categories = categoryService.getAllCategories();
-        return ResponseEntity.ok().body(ObjectResponse.builder()
-                .message("Get list of categories successfully")
-                .status(HttpStatus.OK)
-                .data(categories)
-                .build());
+        if (page != null && limit != null && limit > 0) {
+            int from = (int) Math.min((long) Math.max(page, 0) * limit, categories.size());
+            categories = categories.subList(from, Math.min(from + limit, categories.size()));
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .body(ObjectResponse.builder()
+                        .message("Get list of categories successfully")
+                        .status(HttpStatus.OK)
+                        .data(categories)
+                        .build());
+    }
+
+    private String pagedETag(String eTag, Integer page, Integer limit) {
+        if (page == null || limit == null || limit <= 0) {
+            return eTag;
+        }
+        return eTag.substring(0, eTag.length() - 1) + "-" + page + "-" + limit + "\"";
     }
 
     @PutMapping("/{id}")
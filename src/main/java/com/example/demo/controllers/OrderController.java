@@ -2,11 +2,16 @@ package com.example.demo.controllers;
 import com.example.demo.components.LocalizationUtils;
 import com.example.demo.dtos.OrderDTO;
 import com.example.demo.dtos.OrderDetailDTO;
+import com.example.demo.dtos.OrderStatusDTO;
 import com.example.demo.exceptions.DataNotFoundException;
 import com.example.demo.models.Order;
 import com.example.demo.models.OrderDetail;
 import com.example.demo.responses.*;
+import com.example.demo.services.IIdempotencyService;
+import com.example.demo.services.IOrderGroupCommitService;
+import com.example.demo.services.IOrderIntakeService;
 import com.example.demo.services.IOrderService;
+import com.example.demo.services.IOrderStatusService;
 import com.example.demo.services.OrderDetailService;
 import com.example.demo.untils.MessageKeys;
 import io.swagger.v3.oas.annotations.Operation;
@@ -19,10 +24,14 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -32,12 +41,18 @@ public class OrderController {
     private final IOrderService orderService;
     private final LocalizationUtils localizationUtils;
     private final OrderDetailService orderDetailService;
+    private final IIdempotencyService idempotencyService;
+    private final IOrderIntakeService orderIntakeService;
+    private final IOrderGroupCommitService orderGroupCommitService;
+    private final IOrderStatusService orderStatusService;
 
     @PostMapping("")
     @PreAuthorize("hasRole('ROLE_ADMIN') or hasRole('ROLE_USER')")
     public ResponseEntity<ObjectResponse> insertOrder(
             @Valid @RequestBody OrderDTO orderDTO,
-            BindingResult result
+            BindingResult result,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            Authentication authentication
     ) throws Exception {
         if (result.hasErrors()) {
             List<String> errorMess = result.getFieldErrors().stream().map(FieldError::getDefaultMessage).toList();
@@ -47,7 +62,14 @@ public class OrderController {
                     .data(null)
                     .build());
         }
-        Order order = orderService.createOrder(orderDTO);
+        // client retry với cùng Idempotency-Key nhận lại đúng đơn hàng đã tạo, không tạo đơn mới
+        String fingerprint = DigestUtils.md5DigestAsHex(orderDTO.toString().getBytes(StandardCharsets.UTF_8));
+        OrderResponse order = idempotencyService.executeAsync(
+                "orders:" + authentication.getName(),
+                idempotencyKey,
+                fingerprint,
+                OrderResponse.class,
+                () -> orderGroupCommitService.submit(orderDTO).thenApply(OrderResponse::fromOrderWithDetails));
         return ResponseEntity.ok().body(ObjectResponse.builder()
                 .message("Insert order successfully")
                 .status(HttpStatus.CREATED)
@@ -55,9 +77,61 @@ public class OrderController {
                 .build());
     }
 
+    //checkout bất đồng bộ: xếp đơn vào hàng đợi, trả 202 + ticket, client poll GET /orders/intake/{ticket}
+    @PostMapping("/intake")
+    @PreAuthorize("hasRole('ROLE_ADMIN') or hasRole('ROLE_USER')")
+    public ResponseEntity<ObjectResponse> submitOrder(
+            @Valid @RequestBody OrderDTO orderDTO,
+            BindingResult result,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            Authentication authentication
+    ) throws Exception {
+        if (result.hasErrors()) {
+            List<String> errorMess = result.getFieldErrors().stream().map(FieldError::getDefaultMessage).toList();
+            return ResponseEntity.badRequest().body(ObjectResponse.builder()
+                    .message(errorMess.toString())
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
+        String fingerprint = DigestUtils.md5DigestAsHex(orderDTO.toString().getBytes(StandardCharsets.UTF_8));
+        OrderIntakeResponse intake = idempotencyService.execute(
+                "orders-intake:" + authentication.getName(),
+                idempotencyKey,
+                fingerprint,
+                OrderIntakeResponse.class,
+                () -> orderIntakeService.submit(orderDTO));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ObjectResponse.builder()
+                .message("Order accepted for processing")
+                .status(HttpStatus.ACCEPTED)
+                .data(intake)
+                .build());
+    }
+
+    @GetMapping("/intake/{ticket}")
+    public ResponseEntity<ObjectResponse> getIntakeStatus(@PathVariable("ticket") String ticket) throws Exception {
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Get order status successfully")
+                .status(HttpStatus.OK)
+                .data(orderIntakeService.getStatus(ticket))
+                .build());
+    }
+
     @GetMapping("/user/{user_id}")
-    public  ResponseEntity<ObjectResponse> getOrders(@Valid @PathVariable("user_id") Long userId) throws Exception{
-        List<Order> orders = orderService.findByUserId(userId);
+    public  ResponseEntity<ObjectResponse> getOrders(
+            @Valid @PathVariable("user_id") Long userId,
+            @RequestParam(value = "include_archived", defaultValue = "false") boolean includeArchived,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer limit
+    ) throws Exception{
+        //mặc định chỉ đọc bảng nóng; include_archived=true để xem cả đơn đã lưu trữ
+        List<OrderResponse> orders;
+        if (includeArchived) {
+            orders = orderService.findOrderHistory(userId);
+        } else if (limit != null) {
+            orders = orderService.findByUserId(userId, Math.max(page, 0), Math.min(Math.max(limit, 1), 100));
+        } else {
+            orders = orderService.findByUserId(userId);
+        }
         return ResponseEntity.ok(
                 new ObjectResponse(
                         "Get list of orders successfully",
@@ -67,7 +141,7 @@ public class OrderController {
 
     @GetMapping("/{id}")
     public  ResponseEntity<ObjectResponse> getOrder(@Valid @PathVariable("id") Long orderId) throws Exception{
-        Order existingOrder = orderService.getOrder(orderId);OrderResponse.fromOrder(existingOrder);
+        OrderResponse existingOrder = orderService.getOrderWithDetails(orderId);
         return ResponseEntity.ok(
                 new ObjectResponse("Get order successfully",HttpStatus.OK,existingOrder));
     }
@@ -82,6 +156,70 @@ public class OrderController {
         return ResponseEntity.ok(new ObjectResponse("Update order successfully", HttpStatus.OK, order));
     }
 
+    @PutMapping("/{id}/status")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ObjectResponse> updateOrderStatus(
+            @PathVariable Long id,
+            @Valid @RequestBody OrderStatusDTO orderStatusDTO,
+            Authentication authentication
+    ) throws Exception {
+        Order order = orderStatusService.changeStatus(id, orderStatusDTO.getStatus(), authentication.getName());
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Update order status successfully")
+                .status(HttpStatus.OK)
+                .data(OrderResponse.fromOrder(order))
+                .build());
+    }
+
+    @GetMapping("/{id}/status-history")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ObjectResponse> getOrderStatusHistory(@PathVariable Long id) {
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Get order status history successfully")
+                .status(HttpStatus.OK)
+                .data(orderStatusService.getHistory(id))
+                .build());
+    }
+
+    //id các đơn cũ nhất đang ở trạng thái {status}, đọc từ index trong bộ nhớ (không quét bảng orders)
+    @GetMapping("/status/{status}")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ObjectResponse> getOldestOrdersByStatus(
+            @PathVariable String status,
+            @RequestParam(value = "older_than_minutes", required = false) Long olderThanMinutes,
+            @RequestParam(defaultValue = "100") int limit
+    ) throws Exception {
+        LocalDateTime olderThan = olderThanMinutes == null ? null : LocalDateTime.now().minusMinutes(olderThanMinutes);
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Get orders by status successfully")
+                .status(HttpStatus.OK)
+                .data(orderStatusService.findOldest(status, olderThan, Math.min(limit, 1000)))
+                .build());
+    }
+
+    //worker fulfilment lấy lô việc tiếp theo: các đơn cũ nhất ở {status} được chuyển sang next_status
+    @PostMapping("/status/{status}/claim")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ObjectResponse> claimOrders(
+            @PathVariable String status,
+            @RequestParam("next_status") String nextStatus,
+            @RequestParam(value = "older_than_minutes", required = false) Long olderThanMinutes,
+            @RequestParam(defaultValue = "20") int limit,
+            Authentication authentication
+    ) throws Exception {
+        LocalDateTime olderThan = olderThanMinutes == null ? null : LocalDateTime.now().minusMinutes(olderThanMinutes);
+        List<OrderResponse> orders = orderStatusService
+                .claimNext(status, nextStatus, olderThan, Math.min(limit, 200), authentication.getName())
+                .stream()
+                .map(OrderResponse::fromOrder)
+                .toList();
+        return ResponseEntity.ok(ObjectResponse.builder()
+                .message("Claim orders successfully")
+                .status(HttpStatus.OK)
+                .data(orders)
+                .build());
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public ResponseEntity<ObjectResponse> deleteOrder(@Valid @PathVariable Long id) {
@@ -148,25 +286,6 @@ public class OrderController {
         );
     }
 
-    //lấy ra danh sách các order_details của 1 order nào đó
-    @GetMapping("/{orderId}")
-    public ResponseEntity<?> getOrderDetails(
-            @Valid @PathVariable("orderId") Long orderId
-    ) {
-        List<OrderDetail> orderDetails = orderDetailService.findByOrderId(orderId);
-        List<OrderDetailResponse> orderDetailResponses = orderDetails
-                .stream()
-                .map(OrderDetailResponse::fromOrderDetail)
-                .toList();
-        return ResponseEntity.ok().body(
-                ObjectResponse.builder()
-                        .message("Get order details by orderId successfully")
-                        .status(HttpStatus.OK)
-                        .data(orderDetailResponses)
-                        .build()
-        );
-    }
-
     @PutMapping("/order_details/{id}")
     @Operation(security = { @SecurityRequirement(name = "bearer-key") })
     @PreAuthorize("hasRole('ROLE_ADMIN') or hasRole('ROLE_USER')")
@@ -1,5 +1,7 @@
 package com.example.demo.controllers;
 
+import com.example.demo.components.ImageCache;
+import com.example.demo.components.ImageVariant;
 import com.example.demo.components.LocalizationUtils;
 import com.example.demo.dtos.ProductDTO;
 import com.example.demo.dtos.ProductImageDTO;
@@ -9,37 +11,39 @@ import com.example.demo.models.ProductImage;
 import com.example.demo.responses.ObjectResponse;
 import com.example.demo.responses.ProductListResponse;
 import com.example.demo.responses.ProductResponse;
+import com.example.demo.services.ICatalogService;
+import com.example.demo.services.IImageService;
+import com.example.demo.services.IProductRedisService;
 import com.example.demo.services.ProductRedisService;
 import com.example.demo.services.ProductService;
 import com.example.demo.untils.MessageKeys;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.github.javafaker.Faker;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.util.StringUtils;
 import org.springframework.validation.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
-import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("${api.prefix}/products")
@@ -48,51 +52,107 @@ public class ProductController {
     private final ProductService productService;
     private final LocalizationUtils localizationUtils;
     private final ProductRedisService productRedisService;
+    private final IImageService imageService;
+    private final ImageCache imageCache;
+    private final ICatalogService catalogService;
     private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
+    private static final CacheControl IMAGE_CACHE_CONTROL = CacheControl
+            .maxAge(365, TimeUnit.DAYS)
+            .cachePublic()
+            .immutable();
+    private static final CacheControl LEGACY_IMAGE_CACHE_CONTROL = CacheControl.noCache().cachePublic();
+    //danh sách: cho phép cache ngắn; chi tiết: luôn hỏi lại (client poll tồn kho), 304 khi chưa đổi
+    private static final CacheControl LISTING_CACHE_CONTROL = CacheControl
+            .maxAge(10, TimeUnit.SECONDS)
+            .cachePublic();
+    private static final CacheControl DETAIL_CACHE_CONTROL = CacheControl.noCache();
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
     @GetMapping("")
     public ResponseEntity<ObjectResponse> getProducts(
             @RequestParam(defaultValue = "") String keyword,
             @RequestParam(defaultValue = "0", name = "category_id") Long categoryId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int limit
-    ) throws JsonProcessingException {
-        int totalPages = 0;
+            @RequestParam(defaultValue = "10") int limit,
+            WebRequest webRequest
+    ) {
         PageRequest pageRequest = PageRequest.of(
                 page, limit,
                 Sort.by("id").descending()
         );
         logger.info(String.format("keyword = %s, caterory_id = %d, page = %d, limit = %d"
                 , keyword, categoryId, page, limit));
-        List<ProductResponse> productResponses = productRedisService.getAllProducts(keyword, categoryId, pageRequest);
-        if (productResponses == null) {
-            Page<ProductResponse> productPage = productService.getAllProducts(keyword, categoryId, pageRequest);
-            totalPages = productPage.getTotalPages();
-            productResponses = productPage.getContent();
-            productRedisService.saveAllProducts(productResponses, keyword, categoryId, pageRequest);
+        // client giữ ETag theo thế hệ: thế hệ chưa đổi thì trả 304 mà không đọc page từ Redis/MySQL
+        String ifNoneMatch = webRequest.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            Long generation = productRedisService.currentGeneration();
+            if (generation != null) {
+                String eTag = catalogService.getListingETag(keyword, categoryId, page, limit, generation);
+                if (isNotModified(ifNoneMatch, eTag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                            .eTag(eTag)
+                            .cacheControl(LISTING_CACHE_CONTROL)
+                            .build();
+                }
+            }
         }
-        ProductListResponse productListResponse = ProductListResponse
-                .builder()
-                .products(productResponses)
-                .totalPages(totalPages)
-                .build();
-        return ResponseEntity.ok(ObjectResponse.builder()
-                .message("Get products successfully")
-                .status(HttpStatus.OK)
-                .data(productListResponse)
-                .build());
+        //cache giữ cả totalPages, trước đây trả 0 khi hit cache
+        IProductRedisService.Listing listing = productRedisService.getListing(
+                keyword, categoryId, pageRequest, () -> {
+                    Page<ProductResponse> productPage = productService.getAllProducts(keyword, categoryId, pageRequest);
+                    return ProductListResponse
+                            .builder()
+                            .products(productPage.getContent())
+                            .totalPages(productPage.getTotalPages())
+                            .build();
+                });
+        ProductListResponse productListResponse = listing.page();
+        // page chứng minh được đúng thế hệ hiện tại: ETag theo thế hệ;
+        // còn lại (nạp mới, page stale từ SWR, không cache) tính từ chính trang trả về
+        String eTag = listing.generation() != null
+                ? catalogService.getListingETag(keyword, categoryId, page, limit, listing.generation())
+                : catalogService.getListingETag(productListResponse);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(LISTING_CACHE_CONTROL)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(LISTING_CACHE_CONTROL)
+                .body(ObjectResponse.builder()
+                        .message("Get products successfully")
+                        .status(HttpStatus.OK)
+                        .data(productListResponse)
+                        .build());
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<ObjectResponse> getProductById(
-            @PathVariable("id") Long productId
+            @PathVariable("id") Long productId,
+            WebRequest webRequest
     ) throws DataNotFoundException {
+        String cachedETag = catalogService.getProductETag(productId);
+        if (cachedETag != null && webRequest.checkNotModified(cachedETag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(cachedETag)
+                    .cacheControl(DETAIL_CACHE_CONTROL)
+                    .build();
+        }
         Product existingProduct = productService.getProductById(productId);
-        return ResponseEntity.ok(ObjectResponse.builder()
-                .data(ProductResponse.fromProduct(existingProduct))
-                .message("Get detail product successfully")
-                .status(HttpStatus.OK)
-                .build());
+        // sản phẩm chưa có trong snapshot: Spring tự trả 304 nếu ETag theo updatedAt khớp If-None-Match
+        return ResponseEntity.ok()
+                .eTag(catalogService.getProductETag(existingProduct))
+                .cacheControl(DETAIL_CACHE_CONTROL)
+                .body(ObjectResponse.builder()
+                        .data(ProductResponse.fromProduct(existingProduct))
+                        .message("Get detail product successfully")
+                        .status(HttpStatus.OK)
+                        .build());
     }
 
     @PostMapping("")
@@ -134,7 +194,7 @@ public class ProductController {
                             .build()
             );
         }
-        List<ProductImage> productImages = new ArrayList<>();
+        List<MultipartFile> imageFiles = new ArrayList<>();
         for (MultipartFile file : files) {
             if (file.getSize() == 0) {
                 continue;
@@ -148,8 +208,8 @@ public class ProductController {
                                 .status(HttpStatus.PAYLOAD_TOO_LARGE)
                                 .build());
             }
-            String contentType = file.getContentType();
-            if (contentType == null || !contentType.startsWith("image/")) {
+            // kiểm tra magic bytes, không tin Content-Type của client
+            if (imageService.detectImageType(file) == null) {
                 return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
                         .body(ObjectResponse.builder()
                                 .message(localizationUtils
@@ -157,17 +217,28 @@ public class ProductController {
                                 .status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
                                 .build());
             }
-            // Lưu file và cập nhật thumbnail trong DTO
-            String filename = storeFile(file); // Thay thế hàm này với code của bạn để lưu file
-            //lưu vào đối tượng product trong DB
-            ProductImage productImage = productService.createProductImage(
-                    existingProduct.getId(),
-                    ProductImageDTO.builder()
-                            .imageUrl(filename)
+            imageFiles.add(file);
+        }
+        // kiểm tra số ảnh hiện có trước khi ghi/resize file, tránh xử lý rồi mới bị từ chối
+        if (productService.countProductImages(existingProduct.getId()) + imageFiles.size()
+                > ProductImage.MAXIMUM_IMAGES_PER_PRODUCT) {
+            return ResponseEntity.badRequest().body(
+                    ObjectResponse.builder()
+                            .message(localizationUtils
+                                    .getLocalizedMessage(MessageKeys.UPLOAD_IMAGES_MAX_5))
+                            .status(HttpStatus.BAD_REQUEST)
                             .build()
             );
-            productImages.add(productImage);
         }
+        // ghi file song song, sau đó insert 1 lần cho cả lô
+        List<String> filenames = imageService.storeFiles(imageFiles);
+        List<ProductImage> productImages = productService.createProductImages(
+                existingProduct.getId(),
+                filenames.stream()
+                        .map(filename -> ProductImageDTO.builder()
+                                .imageUrl(filename)
+                                .build())
+                        .toList());
         return ResponseEntity.ok().body(ObjectResponse.builder()
                 .message("Upload image successfully")
                 .status(HttpStatus.CREATED)
@@ -176,26 +247,83 @@ public class ProductController {
     }
 
     @GetMapping("/images/{imageName}")
-    public ResponseEntity<?> viewImage(@PathVariable String imageName) {
+    public ResponseEntity<?> viewImage(
+            @PathVariable String imageName,
+            @RequestParam(defaultValue = "original") String size,
+            HttpServletRequest request
+    ) {
         try {
-            java.nio.file.Path imagePath = Paths.get("upload/"+imageName);
-            UrlResource resource = new UrlResource(imagePath.toUri());
-
-            if (resource.exists()) {
+            ImageVariant variant = ImageVariant.fromCode(size);
+            // ETag chỉ có khi ảnh gốc còn trên đĩa (1 lần stat): ảnh đã xóa không được trả 304
+            String eTag = imageService.getETag(imageName, variant);
+            // chỉ blob (tên = sha256 nội dung) mới bất biến; ảnh cũ có thể bị ghi đè nên phải hỏi lại
+            CacheControl cacheControl = imageService.isContentAddressed(imageName)
+                    ? IMAGE_CACHE_CONTROL
+                    : LEGACY_IMAGE_CACHE_CONTROL;
+            if (eTag != null && isNotModified(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(eTag)
+                        .cacheControl(cacheControl)
+                        .build();
+            }
+            Path imagePath = eTag == null ? null : imageService.getImage(imageName, variant);
+            if (imagePath == null) {
+                Path notFoundPath = imageService.getImage("notfound.jpg", variant);
+                if (notFoundPath == null) {
+                    return ResponseEntity.notFound().build();
+                }
                 return ResponseEntity.ok()
-                        .contentType(MediaType.IMAGE_JPEG)
-                        .body(resource);
-            } else {
+                        .cacheControl(CacheControl.noCache())
+                        .contentType(imageService.getContentType(notFoundPath))
+                        .body(new FileSystemResource(notFoundPath));
+            }
+            MediaType contentType = imageService.getContentType(imagePath);
+            byte[] cached = imageCache.get(imagePath);
+            if (cached != null) {
                 return ResponseEntity.ok()
-                        .contentType(MediaType.IMAGE_JPEG)
-                        .body(new UrlResource(Paths.get("uploads/notfound.jpg").toUri()));
-                //return ResponseEntity.notFound().build();
+                        .eTag(eTag)
+                        .cacheControl(cacheControl)
+                        .contentType(contentType)
+                        .body(new ByteArrayResource(cached));
             }
+            if (request.getHeader(HttpHeaders.RANGE) == null
+                    && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                // để Tomcat gửi file bằng sendfile, không copy qua heap
+                long length = Files.size(imagePath);
+                request.setAttribute(SENDFILE_FILENAME, imagePath.toFile().getCanonicalPath());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, length);
+                return ResponseEntity.ok()
+                        .eTag(eTag)
+                        .cacheControl(cacheControl)
+                        .contentType(contentType)
+                        .contentLength(length)
+                        .build();
+            }
+            // Range request: Spring trả 206 với các ResourceRegion tương ứng
+            return ResponseEntity.ok()
+                    .eTag(eTag)
+                    .cacheControl(cacheControl)
+                    .contentType(contentType)
+                    .body(new FileSystemResource(imagePath));
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
     }
 
+    private boolean isNotModified(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(eTag) || value.equals("W/" + eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public ResponseEntity<?> updateProductById(
@@ -243,24 +371,4 @@ public class ProductController {
         }
         return ResponseEntity.ok("Fake Products created successfully");
     }
-
-    private String storeFile(MultipartFile file) throws IOException {
-        if (!isImageFile(file) || file.getOriginalFilename() == null) {
-            throw new IOException("Invalid image format");
-        }
-        String fileName = StringUtils.cleanPath(Objects.requireNonNull(file.getOriginalFilename()));
-        String uniqueFileName = UUID.randomUUID().toString() + "_" + fileName;
-        Path uploadDir = Paths.get("upload");
-        if (!Files.exists(uploadDir)) {
-            Files.createDirectories(uploadDir);
-        }
-        Path destination = Paths.get(uploadDir.toString(), uniqueFileName);
-        Files.copy(file.getInputStream(), destination, StandardCopyOption.REPLACE_EXISTING);
-        return uniqueFileName;
-    }
-
-    private boolean isImageFile(MultipartFile file) {
-        String contentType = file.getContentType();
-        return contentType != null && contentType.startsWith("image/");
-    }
 }
@@ -1,5 +1,6 @@
 package com.example.demo.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -53,4 +54,8 @@ public class    OrderDTO {
 
     @JsonProperty("cart_items")
     private List<CartItemDTO> cartItems;
+
+    //chỉ worker của OrderIntakeService set, client không gửi được
+    @JsonIgnore
+    private String intakeTicket;
 }
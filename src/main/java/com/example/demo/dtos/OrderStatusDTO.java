@@ -0,0 +1,14 @@
+package com.example.demo.dtos;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.*;
+
+@Data
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderStatusDTO {
+    @NotBlank(message = "Status cannot be empty")
+    private String status;
+}
@@ -0,0 +1,7 @@
+package com.example.demo.exceptions;
+
+public class ConflictException extends Exception{
+    public ConflictException(String message) {
+        super(message);
+    }
+}
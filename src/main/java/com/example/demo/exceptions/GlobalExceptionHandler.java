@@ -27,4 +27,20 @@ public class GlobalExceptionHandler {
                 .message(exception.getMessage())
                 .build());
     }
+    @ExceptionHandler(InvalidParamException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<?> handleInvalidParamException(InvalidParamException exception) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ObjectResponse.builder()
+                .status(HttpStatus.BAD_REQUEST)
+                .message(exception.getMessage())
+                .build());
+    }
+    @ExceptionHandler(ConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ResponseEntity<?> handleConflictException(ConflictException exception) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ObjectResponse.builder()
+                .status(HttpStatus.CONFLICT)
+                .message(exception.getMessage())
+                .build());
+    }
 }
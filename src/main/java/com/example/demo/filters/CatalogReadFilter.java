@@ -0,0 +1,46 @@
+package com.example.demo.filters;
+
+import com.example.demo.configurations.DataSourceContextHolder;
+import com.example.demo.configurations.DataSourceType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+//GET products/categories/catalog chạy trên pool catalog (read-only)
+@Component
+public class CatalogReadFilter extends OncePerRequestFilter {
+    @Value("${api.prefix}")
+    private String apiPrefix;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (!isCatalogRead(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        DataSourceContextHolder.set(DataSourceType.CATALOG);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            DataSourceContextHolder.clear();
+        }
+    }
+
+    private boolean isCatalogRead(HttpServletRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod())) {
+            return false;
+        }
+        String path = request.getServletPath();
+        return path.startsWith(apiPrefix + "/products")
+                || path.startsWith(apiPrefix + "/categories")
+                || path.startsWith(apiPrefix + "/catalog");
+    }
+}
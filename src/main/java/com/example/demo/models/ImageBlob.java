@@ -0,0 +1,28 @@
+package com.example.demo.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "image_blobs")
+public class ImageBlob {
+    @Id
+    @Column(name = "name", length = 80)
+    private String name;//<sha256>.<ext>, trùng với product_images.image_url
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
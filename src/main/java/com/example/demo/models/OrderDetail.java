@@ -13,15 +13,18 @@ import lombok.*;
 @Table(name = "order_details")
 public class OrderDetail {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_details_id")
+    @TableGenerator(name = "order_details_id", table = "id_generators",
+            pkColumnName = "gen_name", valueColumnName = "gen_value",
+            pkColumnValue = "order_details", allocationSize = 50)
+    private Long id;//không dùng IDENTITY để Hibernate gom insert thành batch
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "order_id")
     @JsonBackReference
     private Order order;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
 
@@ -0,0 +1,51 @@
+package com.example.demo.models;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Order lifecycle. {@code orders.status} keeps storing the lowercase code, which is also the
+ * dimension key of the status rollups, so existing rows and reports stay valid.
+ */
+public enum OrderStatus {
+    PENDING("pending"),
+    CONFIRMED("confirmed"),
+    SHIPPED("shipped"),
+    DELIVERED("delivered"),
+    CANCELLED("cancelled");
+
+    private final String code;
+
+    OrderStatus(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public Set<OrderStatus> nextStatuses() {
+        return switch (this) {
+            case PENDING -> Set.of(CONFIRMED, CANCELLED);
+            case CONFIRMED -> Set.of(SHIPPED, CANCELLED);
+            case SHIPPED -> Set.of(DELIVERED);
+            case DELIVERED, CANCELLED -> Set.of();
+        };
+    }
+
+    public boolean canTransitionTo(OrderStatus next) {
+        return nextStatuses().contains(next);
+    }
+
+    //delivered / cancelled: không còn việc gì để xử lý
+    public boolean isTerminal() {
+        return nextStatuses().isEmpty();
+    }
+
+    public static Optional<OrderStatus> fromCode(String code) {
+        return Arrays.stream(values())
+                .filter(status -> status.code.equalsIgnoreCase(code))
+                .findFirst();
+    }
+}
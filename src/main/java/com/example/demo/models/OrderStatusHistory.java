@@ -0,0 +1,38 @@
+package com.example.demo.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+//append-only: mỗi lần đổi trạng thái thêm 1 dòng, không update/xóa
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "order_status_history")
+public class OrderStatusHistory {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_status_history_id")
+    @TableGenerator(name = "order_status_history_id", table = "id_generators",
+            pkColumnName = "gen_name", valueColumnName = "gen_value",
+            pkColumnValue = "order_status_history", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;//chỉ giữ id, không cần nạp Order khi ghi lịch sử
+
+    @Column(name = "from_status", length = 20)
+    private String fromStatus;//null với dòng tạo đơn
+
+    @Column(name = "to_status", nullable = false, length = 20)
+    private String toStatus;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+
+    @Column(name = "changed_by", length = 100)
+    private String changedBy;
+}
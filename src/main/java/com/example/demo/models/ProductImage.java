@@ -14,8 +14,11 @@ public class ProductImage {
     public static final int MAXIMUM_IMAGES_PER_PRODUCT = 5;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "product_images_id")
+    @TableGenerator(name = "product_images_id", table = "id_generators",
+            pkColumnName = "gen_name", valueColumnName = "gen_value",
+            pkColumnValue = "product_images", allocationSize = 50)
+    private Long id;//không dùng IDENTITY để Hibernate gom insert thành batch
 
     @ManyToOne
     @JoinColumn(name = "product_id")
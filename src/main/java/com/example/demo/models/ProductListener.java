@@ -2,6 +2,7 @@ package com.example.demo.models;
 
 import com.example.demo.services.IProductRedisService;
 import com.example.demo.services.ProductRedisService;
+import com.example.demo.untils.TransactionUtils;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
@@ -20,7 +21,7 @@ public class ProductListener {
     public void postPersist(Product product) {
         // Update Redis cache
         logger.info("postPersist");
-        productRedisService.clear();
+        clearListings();
     }
 
     @PreUpdate
@@ -33,7 +34,7 @@ public class ProductListener {
     public void postUpdate(Product product) {
         // Update Redis cache
         logger.info("postUpdate");
-        productRedisService.clear();
+        clearListings();
     }
 
     @PreRemove
@@ -46,6 +47,13 @@ public class ProductListener {
     public void postRemove(Product product) {
         // Update Redis cache
         logger.info("postRemove");
+        clearListings();
+    }
+
+    // listener chạy lúc flush, trước commit: request đọc giữa 2 thời điểm có thể nạp dữ liệu cũ
+    // dưới thế hệ mới, nên tăng thế hệ thêm lần nữa sau commit
+    private void clearListings() {
         productRedisService.clear();
+        TransactionUtils.afterCommit(productRedisService::clear);
     }
 }
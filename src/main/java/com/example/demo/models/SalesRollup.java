@@ -0,0 +1,47 @@
+package com.example.demo.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "sales_rollups")
+public class SalesRollup {
+    public static final String DAILY = "DAILY";
+    public static final String HOURLY = "HOURLY";
+
+    public static final String DIMENSION_PRODUCT = "product";
+    public static final String DIMENSION_CATEGORY = "category";
+    public static final String DIMENSION_STATUS = "status";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "granularity", nullable = false, length = 10)
+    private String granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "dimension", nullable = false, length = 20)
+    private String dimension;
+
+    @Column(name = "dimension_key", nullable = false, length = 50)
+    private String dimensionKey;
+
+    @Column(name = "revenue", nullable = false)
+    private Double revenue;
+
+    @Column(name = "units_sold", nullable = false)
+    private Double unitsSold;
+
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount;
+}
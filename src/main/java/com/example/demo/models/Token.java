@@ -14,8 +14,11 @@ import java.time.LocalDateTime;
 @Table(name = "tokens")
 public class Token {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "tokens_id")
+    @TableGenerator(name = "tokens_id", table = "id_generators",
+            pkColumnName = "gen_name", valueColumnName = "gen_value",
+            pkColumnValue = "tokens", allocationSize = 50)
+    private Long id;//không dùng IDENTITY để Hibernate gom insert thành batch
 
     @Column(name = "token", length = 255)
     private String token;
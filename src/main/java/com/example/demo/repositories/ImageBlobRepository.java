@@ -0,0 +1,42 @@
+package com.example.demo.repositories;
+
+import com.example.demo.models.ImageBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, String> {
+    //đăng ký blob vừa ghi xuống đĩa, nếu đã có thì chỉ làm mới updated_at để GC không xóa
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO image_blobs (name, size, ref_count, updated_at) " +
+            "VALUES (:name, :size, 0, NOW()) " +
+            "ON DUPLICATE KEY UPDATE updated_at = NOW()", nativeQuery = true)
+    void register(@Param("name") String name, @Param("size") long size);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ImageBlob b SET b.refCount = b.refCount + :delta, b.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE b.name = :name")
+    int adjustRefCount(@Param("name") String name, @Param("delta") long delta);
+
+    @Query("SELECT b FROM ImageBlob b WHERE b.refCount <= 0 AND b.updatedAt < :cutoff")
+    List<ImageBlob> findUnreferenced(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    //khóa row trong lúc GC xóa file; register() của upload cùng nội dung sẽ chờ đến khi GC commit
+    @Query(value = "SELECT name FROM image_blobs " +
+            "WHERE name = :name AND ref_count <= 0 AND updated_at < :cutoff FOR UPDATE", nativeQuery = true)
+    Optional<String> lockUnreferenced(@Param("name") String name, @Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ImageBlob b WHERE b.name = :name AND b.refCount <= 0 AND b.updatedAt < :cutoff")
+    int deleteIfUnreferenced(@Param("name") String name, @Param("cutoff") LocalDateTime cutoff);
+}
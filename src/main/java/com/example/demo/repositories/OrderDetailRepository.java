@@ -1,10 +1,47 @@
 package com.example.demo.repositories;
 
 import com.example.demo.models.OrderDetail;
+import com.example.demo.responses.OrderDetailResponse;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long> {
     List<OrderDetail> findByOrderId(Long orderId);
+
+    @Query("SELECT d.order.user.id FROM OrderDetail d WHERE d.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
+
+    @Query("SELECT new com.example.demo.responses.OrderDetailResponse(" +
+            "d.id, d.order.id, d.product.id, d.price, d.numberOfProducts, d.totalMoney, d.color) " +
+            "FROM OrderDetail d WHERE d.order.id IN :orderIds")
+    List<OrderDetailResponse> findResponsesByOrderIds(@Param("orderIds") List<Long> orderIds);
+
+    @Modifying
+    @Query(value = "INSERT INTO order_details_archive SELECT * FROM order_details WHERE order_id IN (:orderIds)",
+            nativeQuery = true)
+    int copyToArchive(@Param("orderIds") List<Long> orderIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM order_details WHERE order_id IN (:orderIds)", nativeQuery = true)
+    int deleteByOrderIds(@Param("orderIds") List<Long> orderIds);
+
+    @Query(value = "SELECT id, order_id AS orderId, product_id AS productId, price, " +
+            "number_of_products AS numberOfProducts, total_money AS totalMoney, color " +
+            "FROM order_details_archive WHERE order_id IN (:orderIds)", nativeQuery = true)
+    List<ArchivedOrderDetail> findArchivedByOrderIds(@Param("orderIds") List<Long> orderIds);
+
+    interface ArchivedOrderDetail {
+        Long getId();
+        Long getOrderId();
+        Long getProductId();
+        Float getPrice();
+        Float getNumberOfProducts();
+        Float getTotalMoney();
+        String getColor();
+    }
 }
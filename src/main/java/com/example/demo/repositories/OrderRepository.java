@@ -1,21 +1,111 @@
 package com.example.demo.repositories;
 
 import com.example.demo.models.Order;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    List<Order> findByUserId(Long userId);
+    //không join users: chỉ cần user_id, user để LAZY; bỏ đơn đã xóa mềm (index user_id, active, id)
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId AND o.active = true ORDER BY o.id DESC")
+    List<Order> findByUserId(@Param("userId") Long userId);
 
-    @Query("SELECT o FROM Order o WHERE " +
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId AND o.active = true ORDER BY o.id DESC")
+    List<Order> findPageByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"orderDetails"})
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findWithDetailsById(@Param("id") Long id);
+
+    @Query("SELECT o FROM Order o WHERE o.active = true AND " +
             "(:keyword IS NULL OR :keyword = '' OR o.fullName LIKE %:keyword% OR o.address LIKE %:keyword% OR o.note LIKE %:keyword%)")
     Page<Order> findByKeyword(String keyword, Pageable pageable);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findByIdForUpdate(@Param("id") Long id);
+
+    //worker khác đang giữ đơn nào thì bỏ qua đơn đó thay vì chờ lock
+    @Query(value = "SELECT * FROM orders WHERE id IN (:ids) AND status = :status AND active = 1 " +
+            "ORDER BY id FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Order> lockByIdsAndStatus(@Param("ids") List<Long> ids, @Param("status") String status);
+
+    //thời điểm đơn vào trạng thái hiện tại: dòng lịch sử gần nhất, đơn chưa có lịch sử thì lấy order_date
+    @Query(value = "SELECT o.id AS id, o.status AS status, " +
+            "UNIX_TIMESTAMP(COALESCE(MAX(h.changed_at), o.order_date)) AS since " +
+            "FROM orders o LEFT JOIN order_status_history h ON h.order_id = o.id AND h.to_status = o.status " +
+            "WHERE o.status IN (:statuses) AND o.active = 1 " +
+            "GROUP BY o.id, o.status, o.order_date", nativeQuery = true)
+    List<StatusEntry> findStatusEntries(@Param("statuses") List<String> statuses);
+
+    //đơn đã đóng (hoặc đã xóa mềm) đủ cũ để chuyển sang orders_archive; SKIP LOCKED để nhiều pod chia việc
+    @Query(value = "SELECT id FROM orders WHERE order_date < :cutoff " +
+            "AND (status IN (:closedStatuses) OR active = 0) " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockArchivableIds(@Param("cutoff") LocalDate cutoff,
+                                 @Param("closedStatuses") List<String> closedStatuses,
+                                 @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "INSERT INTO orders_archive SELECT * FROM orders WHERE id IN (:ids)", nativeQuery = true)
+    int copyToArchive(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM orders WHERE id IN (:ids)", nativeQuery = true)
+    int deleteByIds(@Param("ids") List<Long> ids);
+
+    //orders_archive chỉ để đọc: trả projection, không đưa dòng lưu trữ vào persistence context như entity Order
+    @Query(value = "SELECT " + ARCHIVED_ORDER_COLUMNS + " FROM orders_archive " +
+            "WHERE user_id = :userId AND active = 1 ORDER BY id DESC", nativeQuery = true)
+    List<ArchivedOrder> findArchivedByUserId(@Param("userId") Long userId);
+
+    @Query(value = "SELECT " + ARCHIVED_ORDER_COLUMNS + " FROM orders_archive WHERE id = :id", nativeQuery = true)
+    Optional<ArchivedOrder> findArchivedById(@Param("id") Long id);
+
+    List<Order> findByIntakeTicketIn(Collection<String> intakeTickets);
+
+    Optional<Order> findByIntakeTicket(String intakeTicket);
+
+    @Query(value = "SELECT DISTINCT user_id FROM orders WHERE id IN (:ids)", nativeQuery = true)
+    List<Long> findUserIdsByIds(@Param("ids") List<Long> ids);
+
+    String ARCHIVED_ORDER_COLUMNS = "id, user_id AS userId, fullname AS fullName, " +
+            "phone_number AS phoneNumber, email, address, note, order_date AS orderDate, status, " +
+            "total_money AS totalMoney, shipping_method AS shippingMethod, " +
+            "shipping_address AS shippingAddress, shipping_date AS shippingDate, payment_method AS paymentMethod";
+
+    interface ArchivedOrder {
+        Long getId();
+        Long getUserId();
+        String getFullName();
+        String getPhoneNumber();
+        String getEmail();
+        String getAddress();
+        String getNote();
+        LocalDate getOrderDate();
+        String getStatus();
+        Float getTotalMoney();
+        String getShippingMethod();
+        String getShippingAddress();
+        LocalDate getShippingDate();
+        String getPaymentMethod();
+    }
+
+    interface StatusEntry {
+        Long getId();
+        String getStatus();
+        Long getSince();//epoch giây
+    }
 }
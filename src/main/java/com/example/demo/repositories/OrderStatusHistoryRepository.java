@@ -0,0 +1,44 @@
+package com.example.demo.repositories;
+
+import com.example.demo.models.OrderStatusHistory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface OrderStatusHistoryRepository extends JpaRepository<OrderStatusHistory, Long> {
+    @Query("SELECT h FROM OrderStatusHistory h WHERE h.orderId = :orderId ORDER BY h.changedAt, h.id")
+    List<OrderStatusHistory> findByOrderId(@Param("orderId") Long orderId);
+
+    //dòng tạo đơn (from_status null): giờ và trạng thái của bucket hourly lúc đơn vào
+    Optional<OrderStatusHistory> findFirstByOrderIdAndFromStatusIsNullOrderByChangedAtAsc(Long orderId);
+
+    //lịch sử đi theo đơn sang bảng lưu trữ (OrderArchiveService), không để lại dòng mồ côi
+    @Modifying
+    @Query(value = "INSERT INTO order_status_history_archive " +
+            "SELECT * FROM order_status_history WHERE order_id IN (:orderIds)", nativeQuery = true)
+    int copyToArchive(@Param("orderIds") List<Long> orderIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM order_status_history WHERE order_id IN (:orderIds)", nativeQuery = true)
+    int deleteByOrderIds(@Param("orderIds") List<Long> orderIds);
+
+    @Query(value = "SELECT id, order_id AS orderId, from_status AS fromStatus, to_status AS toStatus, " +
+            "changed_at AS changedAt, changed_by AS changedBy " +
+            "FROM order_status_history_archive WHERE order_id = :orderId ORDER BY changed_at, id",
+            nativeQuery = true)
+    List<ArchivedStatusChange> findArchivedByOrderId(@Param("orderId") Long orderId);
+
+    interface ArchivedStatusChange {
+        Long getId();
+        Long getOrderId();
+        String getFromStatus();
+        String getToStatus();
+        LocalDateTime getChangedAt();
+        String getChangedBy();
+    }
+}
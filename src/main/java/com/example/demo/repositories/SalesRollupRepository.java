@@ -0,0 +1,98 @@
+package com.example.demo.repositories;
+
+import com.example.demo.models.SalesRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long> {
+    //cộng dồn vào bucket, tạo mới nếu chưa có (unique key: granularity, bucket_start, dimension, dimension_key)
+    @Modifying
+    @Query(value = "INSERT INTO sales_rollups " +
+            "(granularity, bucket_start, dimension, dimension_key, revenue, units_sold, order_count) " +
+            "VALUES (:granularity, :bucketStart, :dimension, :dimensionKey, :revenue, :unitsSold, :orderCount) " +
+            "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), " +
+            "units_sold = units_sold + VALUES(units_sold), " +
+            "order_count = order_count + VALUES(order_count)", nativeQuery = true)
+    void increment(@Param("granularity") String granularity,
+                   @Param("bucketStart") LocalDateTime bucketStart,
+                   @Param("dimension") String dimension,
+                   @Param("dimensionKey") String dimensionKey,
+                   @Param("revenue") double revenue,
+                   @Param("unitsSold") double unitsSold,
+                   @Param("orderCount") long orderCount);
+
+    List<SalesRollup> findByGranularityAndDimensionAndBucketStartBetweenOrderByBucketStartAsc(
+            String granularity, String dimension, LocalDateTime from, LocalDateTime to);
+
+    @Query("SELECT r FROM SalesRollup r WHERE r.granularity = :granularity " +
+            "AND r.dimension = :dimension AND r.bucketStart = :bucketStart " +
+            "ORDER BY r.revenue DESC")
+    List<SalesRollup> findTopByBucket(@Param("granularity") String granularity,
+                                      @Param("dimension") String dimension,
+                                      @Param("bucketStart") LocalDateTime bucketStart,
+                                      Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM SalesRollup r WHERE r.granularity = :granularity " +
+            "AND r.bucketStart BETWEEN :from AND :to")
+    int deleteRange(@Param("granularity") String granularity,
+                    @Param("from") LocalDateTime from,
+                    @Param("to") LocalDateTime to);
+
+    //rebuild đọc cả bảng nóng lẫn bảng lưu trữ: mỗi đơn chỉ nằm ở 1 trong 2 nên UNION ALL không đếm trùng;
+    //đơn đã xoá mềm (active = 0) không tính, giống OrderService.deleteOrder trừ khỏi bucket;
+    //điều kiện ngày đặt trong từng nhánh để mỗi nhánh vẫn seek theo index
+    @Modifying
+    @Query(value = "INSERT INTO sales_rollups " +
+            "(granularity, bucket_start, dimension, dimension_key, revenue, units_sold, order_count) " +
+            "SELECT 'DAILY', s.order_date, 'product', CAST(s.product_id AS CHAR), " +
+            "SUM(s.revenue), SUM(s.units), COUNT(DISTINCT s.order_id) " +
+            "FROM (SELECT o.order_date, o.id AS order_id, od.product_id, " +
+            "od.price * od.number_of_products AS revenue, od.number_of_products AS units " +
+            "FROM orders o JOIN order_details od ON od.order_id = o.id " +
+            "WHERE o.order_date BETWEEN :from AND :to AND o.active = 1 AND (o.status IS NULL OR o.status <> 'cancelled') " +
+            "UNION ALL " +
+            "SELECT o.order_date, o.id, od.product_id, od.price * od.number_of_products, od.number_of_products " +
+            "FROM orders_archive o JOIN order_details_archive od ON od.order_id = o.id " +
+            "WHERE o.order_date BETWEEN :from AND :to AND o.active = 1 AND (o.status IS NULL OR o.status <> 'cancelled')) s " +
+            "GROUP BY s.order_date, s.product_id", nativeQuery = true)
+    int rebuildDailyByProduct(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Query(value = "INSERT INTO sales_rollups " +
+            "(granularity, bucket_start, dimension, dimension_key, revenue, units_sold, order_count) " +
+            "SELECT 'DAILY', s.order_date, 'category', CAST(p.category_id AS CHAR), " +
+            "SUM(s.revenue), SUM(s.units), COUNT(DISTINCT s.order_id) " +
+            "FROM (SELECT o.order_date, o.id AS order_id, od.product_id, " +
+            "od.price * od.number_of_products AS revenue, od.number_of_products AS units " +
+            "FROM orders o JOIN order_details od ON od.order_id = o.id " +
+            "WHERE o.order_date BETWEEN :from AND :to AND o.active = 1 AND (o.status IS NULL OR o.status <> 'cancelled') " +
+            "UNION ALL " +
+            "SELECT o.order_date, o.id, od.product_id, od.price * od.number_of_products, od.number_of_products " +
+            "FROM orders_archive o JOIN order_details_archive od ON od.order_id = o.id " +
+            "WHERE o.order_date BETWEEN :from AND :to AND o.active = 1 AND (o.status IS NULL OR o.status <> 'cancelled')) s " +
+            "JOIN products p ON p.id = s.product_id " +
+            "GROUP BY s.order_date, p.category_id", nativeQuery = true)
+    int rebuildDailyByCategory(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Query(value = "INSERT INTO sales_rollups " +
+            "(granularity, bucket_start, dimension, dimension_key, revenue, units_sold, order_count) " +
+            "SELECT 'DAILY', s.order_date, 'status', s.status, " +
+            "SUM(s.revenue), SUM(s.units), COUNT(*) " +
+            "FROM (SELECT o.order_date, o.status, COALESCE(o.total_money, 0) AS revenue, " +
+            "(SELECT COALESCE(SUM(od.number_of_products), 0) FROM order_details od WHERE od.order_id = o.id) AS units " +
+            "FROM orders o WHERE o.order_date BETWEEN :from AND :to AND o.active = 1 AND o.status IS NOT NULL " +
+            "UNION ALL " +
+            "SELECT o.order_date, o.status, COALESCE(o.total_money, 0), " +
+            "(SELECT COALESCE(SUM(od.number_of_products), 0) FROM order_details_archive od WHERE od.order_id = o.id) " +
+            "FROM orders_archive o WHERE o.order_date BETWEEN :from AND :to AND o.active = 1 AND o.status IS NOT NULL) s " +
+            "GROUP BY s.order_date, s.status", nativeQuery = true)
+    int rebuildDailyByStatus(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,27 @@
+package com.example.demo.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CartItemResponse {
+    @JsonProperty("product_id")
+    private Long productId;
+
+    private String name;
+
+    private String thumbnail;
+
+    private Float price;
+
+    private float available;
+
+    private float quantity;
+
+    @JsonProperty("total_money")
+    private Float totalMoney;
+}
@@ -0,0 +1,18 @@
+package com.example.demo.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CartResponse {
+    private List<CartItemResponse> items;
+
+    @JsonProperty("total_money")
+    private Float totalMoney;
+}
@@ -0,0 +1,21 @@
+package com.example.demo.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderIntakeResponse {
+    private String ticket;
+
+    //QUEUED -> COMMITTED | FAILED
+    private String status;
+
+    @JsonProperty("order_id")
+    private Long orderId;
+
+    private String message;
+}
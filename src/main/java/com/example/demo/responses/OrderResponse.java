@@ -1,6 +1,7 @@
 package com.example.demo.responses;
 
 import com.example.demo.models.Order;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 
@@ -54,8 +55,23 @@ public class OrderResponse {
     @JsonProperty("payment_method")
     private String paymentMethod;
 
-//    @JsonProperty("order_details")
-//    private List<OrderDetail> orderDetails;
+    @JsonProperty("order_details")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<OrderDetailResponse> orderDetails;
+
+    public static OrderResponse fromOrder(Order order, List<OrderDetailResponse> orderDetails) {
+        OrderResponse orderResponse = fromOrder(order);
+        orderResponse.setOrderDetails(orderDetails);
+        return orderResponse;
+    }
+
+    //cùng dạng với GET /orders/{id}; order phải có sẵn orderDetails (vừa tạo hoặc nạp qua entity graph)
+    public static OrderResponse fromOrderWithDetails(Order order) {
+        return fromOrder(order, order.getOrderDetails()
+                .stream()
+                .map(OrderDetailResponse::fromOrderDetail)
+                .toList());
+    }
 
     public static OrderResponse fromOrder(Order order) {
         OrderResponse orderResponse =  OrderResponse
@@ -74,7 +90,6 @@ public class OrderResponse {
                 .shippingAddress(order.getShippingAddress())
                 .shippingDate(order.getShippingDate())
                 .paymentMethod(order.getPaymentMethod())
-//                .orderDetails(order.getOrderDetails())
                 .build();
         return orderResponse;
     }
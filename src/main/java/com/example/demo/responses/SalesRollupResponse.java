@@ -0,0 +1,47 @@
+package com.example.demo.responses;
+
+import com.example.demo.models.SalesRollup;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesRollupResponse {
+    @JsonProperty("granularity")
+    private String granularity;
+
+    @JsonProperty("bucket_start")
+    private LocalDateTime bucketStart;
+
+    @JsonProperty("dimension")
+    private String dimension;
+
+    @JsonProperty("dimension_key")
+    private String dimensionKey;
+
+    @JsonProperty("revenue")
+    private double revenue;
+
+    @JsonProperty("units_sold")
+    private double unitsSold;
+
+    @JsonProperty("order_count")
+    private long orderCount;
+
+    public static SalesRollupResponse fromSalesRollup(SalesRollup salesRollup) {
+        return SalesRollupResponse.builder()
+                .granularity(salesRollup.getGranularity())
+                .bucketStart(salesRollup.getBucketStart())
+                .dimension(salesRollup.getDimension())
+                .dimensionKey(salesRollup.getDimensionKey())
+                .revenue(salesRollup.getRevenue())
+                .unitsSold(salesRollup.getUnitsSold())
+                .orderCount(salesRollup.getOrderCount())
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.demo.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesSummaryResponse {
+    @JsonProperty("from")
+    private LocalDate from;
+
+    @JsonProperty("to")
+    private LocalDate to;
+
+    @JsonProperty("revenue")
+    private double revenue;
+
+    @JsonProperty("units_sold")
+    private double unitsSold;
+
+    @JsonProperty("order_count")
+    private long orderCount;
+}
@@ -0,0 +1,168 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.CartItemDTO;
+import com.example.demo.dtos.OrderDTO;
+import com.example.demo.exceptions.ConflictException;
+import com.example.demo.exceptions.DataNotFoundException;
+import com.example.demo.exceptions.InvalidParamException;
+import com.example.demo.models.Order;
+import com.example.demo.responses.CartItemResponse;
+import com.example.demo.responses.CartResponse;
+import com.example.demo.responses.ProductResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Server-side cart: one Redis hash per user ({@code cart:<userId>}, field = product id,
+ * value = quantity) updated with atomic HINCRBYFLOAT. Price and availability come from the
+ * in-memory catalog snapshot, so reading or changing a cart does not touch MySQL; at checkout the
+ * whole cart goes through one batched, locked revalidation in {@link IOrderService#createOrders}.
+ * Only one checkout per cart runs at a time ({@code cart:checkout:<userId>}), and the ordered lines are
+ * removed when the order actually commits, even if the caller stopped waiting before that.
+ */
+@Service
+public class CartService implements ICartService {
+    private static final String KEY_PREFIX = "cart:";
+    private static final String CHECKOUT_PREFIX = "cart:checkout:";
+    //đủ dài cho 1 lần ghi đơn bị chậm; pod chết giữa chừng thì khoá tự hết hạn
+    private static final Duration CHECKOUT_LOCK_TTL = Duration.ofMinutes(5);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ICatalogService catalogService;
+    private final IOrderGroupCommitService orderGroupCommitService;
+    private final Duration cartTtl;
+
+    public CartService(RedisTemplate<String, Object> redisTemplate,
+                       ICatalogService catalogService,
+                       IOrderGroupCommitService orderGroupCommitService,
+                       @Value("${cart.ttl-days:30}") long cartTtlDays) {
+        this.redisTemplate = redisTemplate;
+        this.catalogService = catalogService;
+        this.orderGroupCommitService = orderGroupCommitService;
+        this.cartTtl = Duration.ofDays(cartTtlDays);
+    }
+
+    @Override
+    public CartResponse getCart(Long userId) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(cartKey(userId));
+        List<CartItemResponse> items = new ArrayList<>();
+        float totalMoney = 0;
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            Long productId = Long.valueOf(entry.getKey().toString());
+            float quantity = ((Number) entry.getValue()).floatValue();
+            ProductResponse product;
+            try {
+                product = catalogService.getProduct(productId);
+            } catch (DataNotFoundException e) {
+                //sản phẩm đã bị xoá khỏi catalog
+                redisTemplate.opsForHash().delete(cartKey(userId), entry.getKey());
+                continue;
+            }
+            float itemTotal = product.getPrice() * quantity;
+            totalMoney += itemTotal;
+            items.add(CartItemResponse.builder()
+                    .productId(productId)
+                    .name(product.getName())
+                    .thumbnail(product.getThumbnail())
+                    .price(product.getPrice())
+                    .available(product.getAvailable())
+                    .quantity(quantity)
+                    .totalMoney(itemTotal)
+                    .build());
+        }
+        return CartResponse.builder()
+                .items(items)
+                .totalMoney(totalMoney)
+                .build();
+    }
+
+    @Override
+    public CartResponse addItem(Long userId, CartItemDTO cartItemDTO) throws Exception {
+        if (cartItemDTO.getQuantity() <= 0) {
+            throw new InvalidParamException("Quantity must be > 0");
+        }
+        ProductResponse product = catalogService.getProduct(cartItemDTO.getProductId());
+        String key = cartKey(userId);
+        String field = cartItemDTO.getProductId().toString();
+        Double quantity = redisTemplate.opsForHash().increment(key, field, cartItemDTO.getQuantity());
+        if (quantity != null && quantity > product.getAvailable()) {
+            //hoàn lại phần vừa cộng
+            redisTemplate.opsForHash().increment(key, field, -cartItemDTO.getQuantity());
+            throw new InvalidParamException("Insufficient quantity with id: " + cartItemDTO.getProductId());
+        }
+        redisTemplate.expire(key, cartTtl);
+        return getCart(userId);
+    }
+
+    @Override
+    public CartResponse updateItem(Long userId, Long productId, float quantity) throws Exception {
+        if (quantity <= 0) {
+            return removeItem(userId, productId);
+        }
+        ProductResponse product = catalogService.getProduct(productId);
+        if (quantity > product.getAvailable()) {
+            throw new InvalidParamException("Insufficient quantity with id: " + productId);
+        }
+        String key = cartKey(userId);
+        redisTemplate.opsForHash().put(key, productId.toString(), quantity);
+        redisTemplate.expire(key, cartTtl);
+        return getCart(userId);
+    }
+
+    @Override
+    public CartResponse removeItem(Long userId, Long productId) {
+        redisTemplate.opsForHash().delete(cartKey(userId), productId.toString());
+        return getCart(userId);
+    }
+
+    @Override
+    public void clearCart(Long userId) {
+        redisTemplate.delete(cartKey(userId));
+    }
+
+    @Override
+    public CompletableFuture<Order> checkout(Long userId, OrderDTO orderDTO) throws Exception {
+        String key = cartKey(userId);
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        if (entries.isEmpty()) {
+            throw new InvalidParamException("Cart is empty");
+        }
+        List<CartItemDTO> cartItems = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            Long productId = Long.valueOf(entry.getKey().toString());
+            float quantity = ((Number) entry.getValue()).floatValue();
+            cartItems.add(CartItemDTO.builder()
+                    .productId(productId)
+                    .quantity(quantity)
+                    .build());
+        }
+        orderDTO.setUserId(userId);
+        orderDTO.setCartItems(cartItems);
+        //tổng tiền tính lại trong createOrders từ giá của product đã khoá, không lấy giá snapshot
+        orderDTO.setTotalMoney(null);
+        //đơn trước của giỏ này còn đang ghi (caller đã hết thời gian chờ): không đặt thêm lần nữa
+        String checkoutKey = CHECKOUT_PREFIX + userId;
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(checkoutKey, "1", CHECKOUT_LOCK_TTL))) {
+            throw new ConflictException("Checkout of this cart is already in progress");
+        }
+        //tồn kho và giá được kiểm tra lại 1 lần cho cả giỏ, có khoá, trong createOrders
+        return orderGroupCommitService.submit(orderDTO).whenComplete((order, error) -> {
+            if (error == null) {
+                //chỉ xoá các dòng đã đặt, món thêm vào trong lúc checkout vẫn còn
+                redisTemplate.opsForHash().delete(key, entries.keySet().toArray());
+            }
+            redisTemplate.delete(checkoutKey);
+        });
+    }
+
+    private String cartKey(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+}
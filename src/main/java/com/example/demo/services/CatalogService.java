@@ -0,0 +1,240 @@
+package com.example.demo.services;
+
+import com.example.demo.components.CatalogVersion;
+import com.example.demo.components.CategoryDictionary;
+import com.example.demo.configurations.DataSourceContextHolder;
+import com.example.demo.configurations.DataSourceType;
+import com.example.demo.exceptions.DataNotFoundException;
+import com.example.demo.models.Category;
+import com.example.demo.models.Product;
+import com.example.demo.repositories.ProductRepository;
+import com.example.demo.responses.ProductListResponse;
+import com.example.demo.responses.ProductResponse;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable in-memory snapshot of the catalog products for the read-only {@code /catalog} API.
+ * Reads never touch JDBC or Redis: they work on a snapshot that is swapped atomically by a
+ * background refresh whenever the {@link CatalogVersion} changes (polled, and pushed over
+ * {@value CatalogVersion#CHANGED_TOPIC}), or at the latest every {@code catalog.snapshot.max-age-ms}.
+ * The poll is a single Redis GET; the reload itself runs on the catalog pool (or the replica).
+ * Categories come from {@link CategoryDictionary}.
+ * Catalogs larger than {@code catalog.snapshot.max-products} are not snapshotted and fall back
+ * to the database path.
+ */
+@Service
+@Slf4j
+public class CatalogService implements ICatalogService, MessageListener {
+    private final ProductRepository productRepository;
+    private final CategoryDictionary categoryDictionary;
+    private final IProductService productService;
+    private final CatalogVersion catalogVersion;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxProducts;
+    private final long maxAgeMillis;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private record CatalogProduct(Long id, Long categoryId, String searchText, ProductResponse response) {
+    }
+
+    private record Snapshot(String fingerprint,
+                            long loadedAt,
+                            boolean complete,
+                            List<CatalogProduct> products,
+                            Map<Long, CatalogProduct> productsById) {
+        static final Snapshot EMPTY = new Snapshot(null, 0, false, List.of(), Map.of());
+    }
+
+    public CatalogService(ProductRepository productRepository,
+                          CategoryDictionary categoryDictionary,
+                          IProductService productService,
+                          CatalogVersion catalogVersion,
+                          RedisMessageListenerContainer redisMessageListenerContainer,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${catalog.snapshot.max-products:50000}") int maxProducts,
+                          @Value("${catalog.snapshot.max-age-ms:300000}") long maxAgeMillis) {
+        this.productRepository = productRepository;
+        this.categoryDictionary = categoryDictionary;
+        this.productService = productService;
+        this.catalogVersion = catalogVersion;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxProducts = maxProducts;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CatalogVersion.CHANGED_TOPIC));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        refreshIfStale();
+    }
+
+    @Override
+    public ProductListResponse getProducts(String keyword, Long categoryId, int page, int limit) {
+        Snapshot current = snapshot;
+        if (!current.complete()) {
+            Page<ProductResponse> productPage = productService.getAllProducts(
+                    keyword, categoryId, PageRequest.of(page, limit, Sort.by("id").descending()));
+            return ProductListResponse.builder()
+                    .products(productPage.getContent())
+                    .totalPages(productPage.getTotalPages())
+                    .build();
+        }
+        if (page < 0 || limit < 1) {
+            throw new IllegalArgumentException("Page index must not be negative and page size must be positive");
+        }
+        String needle = keyword == null ? "" : keyword.toLowerCase(Locale.ROOT);
+        boolean allCategories = categoryId == null || categoryId == 0;
+        // 1 lượt duyệt: đếm tổng số kết quả, chỉ giữ lại các phần tử thuộc trang được hỏi
+        long from = (long) page * limit;
+        int matched = 0;
+        List<ProductResponse> products = new ArrayList<>(limit);
+        for (CatalogProduct product : current.products()) {
+            if ((allCategories || categoryId.equals(product.categoryId()))
+                    && (needle.isEmpty() || product.searchText().contains(needle))) {
+                if (matched >= from && products.size() < limit) {
+                    products.add(product.response());
+                }
+                matched++;
+            }
+        }
+        return ProductListResponse.builder()
+                .products(products)
+                .totalPages((matched + limit - 1) / limit)
+                .build();
+    }
+
+    @Override
+    public ProductResponse getProduct(Long id) throws DataNotFoundException {
+        Snapshot current = snapshot;
+        if (!current.complete()) {
+            return ProductResponse.fromProduct(productService.getProductById(id));
+        }
+        CatalogProduct product = current.productsById().get(id);
+        if (product == null) {
+            throw new DataNotFoundException("Cannot find product with id: " + id);
+        }
+        return product.response();
+    }
+
+    @Override
+    public List<Category> getCategories() {
+        return categoryDictionary.getAll();
+    }
+
+    //ETag theo nội dung trang thực sự trả về, nên trang cũ từ cache SWR mang ETag cũ; mọi update đều đổi updatedAt
+    @Override
+    public String getListingETag(ProductListResponse productList) {
+        StringBuilder key = new StringBuilder("products|").append(productList.getTotalPages());
+        for (ProductResponse product : productList.getProducts()) {
+            key.append('|').append(product.getName())
+                    .append(':').append(product.getCategoryId())
+                    .append(':').append(product.getPrice())
+                    .append(':').append(product.getAvailable())
+                    .append(':').append(product.getUpdatedAt());
+        }
+        return eTagOf(key.toString());
+    }
+
+    //ETag theo thế hệ listing: kiểm tra được trước khi đọc Redis/MySQL, mọi ghi sản phẩm đều tăng thế hệ
+    @Override
+    public String getListingETag(String keyword, Long categoryId, int page, int limit, long generation) {
+        return eTagOf("products|g" + generation + "|" + keyword + "|" + categoryId + "|" + page + "|" + limit);
+    }
+
+    @Override
+    public String getProductETag(Long id) {
+        CatalogProduct product = snapshot.productsById().get(id);
+        return product == null ? null : productETag(id, product.response().getUpdatedAt());
+    }
+
+    @Override
+    public String getProductETag(Product product) {
+        return productETag(product.getId(), product.getUpdatedAt());
+    }
+
+    private static String productETag(Long id, LocalDateTime updatedAt) {
+        return eTagOf("product|" + id + "|" + updatedAt);
+    }
+
+    private static String eTagOf(String key) {
+        return "\"" + DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    //giữ monitor trong lúc đọc Redis/MySQL: từ Java 24 (JEP 491) virtual thread chờ ở đây không pin carrier
+    @Override
+    @Scheduled(fixedDelayString = "${catalog.snapshot.check-interval-ms:1000}")
+    public synchronized void refreshIfStale() {
+        Snapshot current = snapshot;
+        //đọc version trước khi nạp: thay đổi xảy ra trong lúc nạp sẽ làm lần kiểm tra sau nạp lại
+        Long version = catalogVersion.current();
+        long now = System.currentTimeMillis();
+        boolean expired = now - current.loadedAt() > maxAgeMillis;
+        if (!expired && current.loadedAt() > 0
+                && (version == null || Objects.equals(String.valueOf(version), current.fingerprint()))) {
+            return;
+        }
+        //Redis không trả lời: fingerprint riêng của pod, ETag tạm thời khác nhau giữa các pod
+        String fingerprint = version != null ? String.valueOf(version) : "local-" + now;
+        DataSourceContextHolder.set(DataSourceType.CATALOG);
+        try {
+            snapshot = readOnlyTransaction.execute(status -> load(fingerprint, current));
+        } finally {
+            DataSourceContextHolder.clear();
+        }
+    }
+
+    private Snapshot load(String fingerprint, Snapshot current) {
+        //catalog quá lớn thì không nạp snapshot
+        long productCount = productRepository.count();
+        if (productCount > maxProducts) {
+            if (current.complete() || current.loadedAt() == 0) {
+                log.warn("Catalog has {} products, more than catalog.snapshot.max-products={}; serving from database",
+                        productCount, maxProducts);
+            }
+            return new Snapshot(fingerprint, System.currentTimeMillis(),
+                    false, List.of(), Map.of());
+        }
+        List<CatalogProduct> products = productRepository.findAll(Sort.by("id").descending()).stream()
+                .map(product -> new CatalogProduct(
+                        product.getId(),
+                        product.getCategory().getId(),
+                        (product.getName() + " " + Objects.toString(product.getDescription(), ""))
+                                .toLowerCase(Locale.ROOT),
+                        ProductResponse.fromProduct(product)))
+                .toList();
+        Map<Long, CatalogProduct> productsById = new HashMap<>();
+        products.forEach(product -> productsById.put(product.id(), product));
+        return new Snapshot(fingerprint, System.currentTimeMillis(),
+                true, products, Map.copyOf(productsById));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.services;
 
+import com.example.demo.components.CategoryDictionary;
 import com.example.demo.dtos.CategoryDTO;
 import com.example.demo.models.Category;
 import com.example.demo.repositories.CategoryRepository;
@@ -12,36 +13,43 @@ import java.util.List;
 @RequiredArgsConstructor
 public class CategoryService implements ICategoryService{
     private final CategoryRepository categoryRepository;
+    private final CategoryDictionary categoryDictionary;
 
     @Override
     public Category createCategory(CategoryDTO categoryDTO) {
         Category category = Category.builder()
                 .name(categoryDTO.getName())
                 .build();
-        return categoryRepository.save(category);
+        Category savedCategory = categoryRepository.save(category);
+        categoryDictionary.publishChange();
+        return savedCategory;
     }
 
     @Override
     public Category getCategoryById(Long id) {
-        return categoryRepository.findById(id)
+        return categoryDictionary.findById(id)
                 .orElseThrow(() -> new RuntimeException("Category not found"));
     }
 
     @Override
     public List<Category> getAllCategories() {
-        return categoryRepository.findAll();
+        return categoryDictionary.getAll();
     }
 
     @Override
     public Category updateCategory(Long id, CategoryDTO categoryDTO) {
-        Category existingCategory = getCategoryById(id);
+        //đọc entity từ DB, không sửa object trong snapshot
+        Category existingCategory = categoryRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Category not found"));
         existingCategory.setName(categoryDTO.getName());
         categoryRepository.save(existingCategory);
+        categoryDictionary.publishChange();
         return existingCategory;
     }
 
     @Override
     public void deleteCategory(Long id) {
         categoryRepository.deleteById(id);
+        categoryDictionary.publishChange();
     }
 }
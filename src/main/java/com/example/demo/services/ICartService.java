@@ -0,0 +1,22 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.CartItemDTO;
+import com.example.demo.dtos.OrderDTO;
+import com.example.demo.models.Order;
+import com.example.demo.responses.CartResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface ICartService {
+    CartResponse getCart(Long userId);
+
+    CartResponse addItem(Long userId, CartItemDTO cartItemDTO) throws Exception;
+
+    CartResponse updateItem(Long userId, Long productId, float quantity) throws Exception;
+
+    CartResponse removeItem(Long userId, Long productId);
+
+    void clearCart(Long userId);
+
+    CompletableFuture<Order> checkout(Long userId, OrderDTO orderDTO) throws Exception;
+}
@@ -0,0 +1,27 @@
+package com.example.demo.services;
+
+import com.example.demo.exceptions.DataNotFoundException;
+import com.example.demo.models.Category;
+import com.example.demo.models.Product;
+import com.example.demo.responses.ProductListResponse;
+import com.example.demo.responses.ProductResponse;
+
+import java.util.List;
+
+public interface ICatalogService {
+    ProductListResponse getProducts(String keyword, Long categoryId, int page, int limit);
+
+    ProductResponse getProduct(Long id) throws DataNotFoundException;
+
+    List<Category> getCategories();
+
+    String getListingETag(ProductListResponse productList);
+
+    String getListingETag(String keyword, Long categoryId, int page, int limit, long generation);
+
+    String getProductETag(Long id);
+
+    String getProductETag(Product product);
+
+    void refreshIfStale();
+}
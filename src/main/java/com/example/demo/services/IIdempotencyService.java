@@ -0,0 +1,19 @@
+package com.example.demo.services;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+public interface IIdempotencyService {
+    <T> T execute(String scope,
+                  String idempotencyKey,
+                  String fingerprint,
+                  Class<T> resultType,
+                  Callable<T> action) throws Exception;
+
+    //action trả future: hết wait-timeout thì 409 nhưng kết quả vẫn được lưu khi future xong
+    <T> T executeAsync(String scope,
+                       String idempotencyKey,
+                       String fingerprint,
+                       Class<T> resultType,
+                       Callable<CompletableFuture<T>> action) throws Exception;
+}
@@ -0,0 +1,27 @@
+package com.example.demo.services;
+
+import com.example.demo.components.ImageVariant;
+import org.springframework.http.MediaType;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+public interface IImageService {
+    String storeFile(MultipartFile file) throws IOException;
+
+    List<String> storeFiles(List<MultipartFile> files) throws IOException;
+
+    void collectGarbage();
+
+    String detectImageType(MultipartFile file) throws IOException;
+
+    Path getImage(String imageName, ImageVariant variant) throws IOException;
+
+    MediaType getContentType(Path imagePath);
+
+    String getETag(String imageName, ImageVariant variant) throws IOException;
+
+    boolean isContentAddressed(String imageName);
+}
@@ -0,0 +1,5 @@
+package com.example.demo.services;
+
+public interface IOrderArchiveService {
+    int archiveClosedOrders();
+}
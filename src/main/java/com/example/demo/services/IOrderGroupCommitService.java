@@ -0,0 +1,11 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderDTO;
+import com.example.demo.models.Order;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface IOrderGroupCommitService {
+    //future hoàn thành khi nhóm chứa đơn này commit (hoặc đơn bị từ chối)
+    CompletableFuture<Order> submit(OrderDTO orderDTO);
+}
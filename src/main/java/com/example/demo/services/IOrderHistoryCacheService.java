@@ -0,0 +1,15 @@
+package com.example.demo.services;
+
+import com.example.demo.responses.OrderResponse;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface IOrderHistoryCacheService {
+    int getWindowSize();
+    List<OrderResponse> getRange(Long userId, int offset, int limit);
+    long beginLoad(Long userId);
+    void put(Long userId, long version, List<OrderResponse> newestOrders);
+    void pushCreated(Long userId, OrderResponse order);
+    void evict(Collection<Long> userIds);
+}
@@ -0,0 +1,11 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderDTO;
+import com.example.demo.exceptions.DataNotFoundException;
+import com.example.demo.responses.OrderIntakeResponse;
+
+public interface IOrderIntakeService {
+    OrderIntakeResponse submit(OrderDTO orderDTO) throws Exception;
+
+    OrderIntakeResponse getStatus(String ticket) throws DataNotFoundException;
+}
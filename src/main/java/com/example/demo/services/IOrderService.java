@@ -12,9 +12,13 @@ import java.util.List;
 
 public interface IOrderService {
     Order createOrder(OrderDTO orderDTO) throws Exception;
+    List<OrderCreationResult> createOrders(List<OrderDTO> orderDTOs);
     Order getOrder(Long id);
+    OrderResponse getOrderWithDetails(Long id) throws DataNotFoundException;
     Order updateOrder(Long id, OrderDTO orderDTO) throws DataNotFoundException;
     void deleteOrder(Long id);
-    List<Order> findByUserId(Long userId);
+    List<OrderResponse> findByUserId(Long userId);
+    List<OrderResponse> findByUserId(Long userId, int page, int limit);
+    List<OrderResponse> findOrderHistory(Long userId);
     Page<Order> getOrdersByKeyword(String keyword, Pageable pageable);
 }
@@ -0,0 +1,19 @@
+package com.example.demo.services;
+
+import com.example.demo.exceptions.ConflictException;
+import com.example.demo.exceptions.DataNotFoundException;
+import com.example.demo.exceptions.InvalidParamException;
+import com.example.demo.models.Order;
+import com.example.demo.models.OrderStatusHistory;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface IOrderStatusService {
+    void recordCreated(List<Order> orders);
+    Order changeStatus(Long orderId, String status, String changedBy) throws DataNotFoundException, InvalidParamException, ConflictException;
+    List<Order> claimNext(String status, String nextStatus, LocalDateTime olderThan, int limit, String changedBy)
+            throws InvalidParamException, ConflictException;
+    List<Long> findOldest(String status, LocalDateTime olderThan, int limit) throws InvalidParamException;
+    List<OrderStatusHistory> getHistory(Long orderId);
+}
@@ -1,22 +1,27 @@
 package com.example.demo.services;
 
-import com.example.demo.responses.ProductResponse;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.example.demo.responses.ProductListResponse;
 import org.springframework.data.domain.PageRequest;
 
-import java.util.List;
+import java.util.function.Supplier;
 
 public interface IProductRedisService {
+    //page + thế hệ listing mà page chắc chắn đúng; null khi không chứng minh được (bypass, nạp mới, page cũ)
+    record Listing(ProductListResponse page, Long generation) {
+    }
+
     void clear();
 
-    List<ProductResponse> getAllProducts(String keyword,
-                                         Long categoryId,
-                                         PageRequest pageRequest)
-            throws JsonProcessingException;
+    //thế hệ listing hiện tại, null khi Redis không trả lời
+    Long currentGeneration();
+
+    ProductListResponse getAllProducts(String keyword,
+                                       Long categoryId,
+                                       PageRequest pageRequest,
+                                       Supplier<ProductListResponse> loader);
 
-    void saveAllProducts(List<ProductResponse> productResponses,
-                         String keyword,
-                         Long categoryId,
-                         PageRequest pageRequest)
-            throws JsonProcessingException;
+    Listing getListing(String keyword,
+                       Long categoryId,
+                       PageRequest pageRequest,
+                       Supplier<ProductListResponse> loader);
 }
@@ -9,6 +9,8 @@ import com.example.demo.responses.ProductResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 
+import java.util.List;
+
 public interface IProductService {
     Product createProduct(ProductDTO productDTO) throws DataNotFoundException;
 
@@ -26,4 +28,10 @@ public interface IProductService {
             Long productId,
             ProductImageDTO productImageDTO) throws Exception;
 
+    long countProductImages(Long productId);
+
+    List<ProductImage> createProductImages(
+            Long productId,
+            List<ProductImageDTO> productImageDTOs) throws Exception;
+
 }
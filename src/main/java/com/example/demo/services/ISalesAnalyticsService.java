@@ -0,0 +1,27 @@
+package com.example.demo.services;
+
+import com.example.demo.exceptions.InvalidParamException;
+import com.example.demo.models.Order;
+import com.example.demo.models.OrderDetail;
+import com.example.demo.responses.SalesRollupResponse;
+import com.example.demo.responses.SalesSummaryResponse;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ISalesAnalyticsService {
+    void recordOrder(Order order, List<OrderDetail> orderDetails);
+
+    void recordOrderUpdate(Order order, String oldStatus, Float oldTotalMoney);
+
+    void recordOrderDeleted(Order order, String createdStatus, LocalDateTime createdAt);
+
+    int rebuildDaily(LocalDate from, LocalDate to);
+
+    SalesSummaryResponse getSummary(LocalDate from, LocalDate to);
+
+    List<SalesRollupResponse> getRollups(String granularity, String dimension, LocalDate from, LocalDate to);
+
+    List<SalesRollupResponse> getTopProducts(LocalDate date, int limit) throws InvalidParamException;
+}
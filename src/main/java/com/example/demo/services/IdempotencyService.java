@@ -0,0 +1,279 @@
+package com.example.demo.services;
+
+import com.example.demo.exceptions.ConflictException;
+import com.example.demo.exceptions.InvalidParamException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs an action at most once per (scope, Idempotency-Key).
+ * <ul>
+ *     <li>Results are kept in Redis ({@code idempotency:<scope>:<key>}) and, for a short time,
+ *     in process so that retry storms are answered without a Redis round trip.</li>
+ *     <li>Concurrent duplicates wait for the first execution and receive its result: on the same pod
+ *     through a shared future, across pods by polling the PENDING marker in Redis.</li>
+ *     <li>Reusing a key with a different request fingerprint is rejected with 409.</li>
+ *     <li>A failed execution removes the marker so the client can retry with the same key.</li>
+ *     <li>An action that outlives {@code wait-timeout-ms} answers 409 but keeps running: its PENDING
+ *     marker is extended to {@code pending-ttl-seconds} and the result is stored when the future
+ *     completes, so a retry with the same key waits for or replays it instead of running it again.</li>
+ * </ul>
+ * If Redis is unavailable the in-process protection still applies.
+ */
+@Service
+@Slf4j
+public class IdempotencyService implements IIdempotencyService {
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final String PENDING = "PENDING";
+    private static final String COMPLETED = "COMPLETED";
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final long POLL_INTERVAL_MS = 50;
+    private static final RedisScript<Long> EXTEND_PENDING = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final Duration resultTtl;
+    private final Duration lockTtl;
+    private final Duration pendingTtl;
+    private final long waitTimeoutMillis;
+    private final long localTtlMillis;
+    private final ConcurrentHashMap<String, CompletableFuture<StoredResult>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LocalResult> recentResults = new ConcurrentHashMap<>();
+
+    //giá trị lưu trong Redis
+    private record StoredResult(String state, String fingerprint, String result) {
+    }
+
+    private record LocalResult(StoredResult stored, long expiresAt) {
+    }
+
+    public IdempotencyService(RedisTemplate<String, Object> redisTemplate,
+                              @Value("${idempotency.result-ttl-hours:24}") long resultTtlHours,
+                              @Value("${idempotency.lock-ttl-seconds:30}") long lockTtlSeconds,
+                              @Value("${idempotency.pending-ttl-seconds:300}") long pendingTtlSeconds,
+                              @Value("${idempotency.wait-timeout-ms:10000}") long waitTimeoutMillis,
+                              @Value("${idempotency.local-ttl-seconds:60}") long localTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.resultTtl = Duration.ofHours(resultTtlHours);
+        this.lockTtl = Duration.ofSeconds(lockTtlSeconds);
+        this.pendingTtl = Duration.ofSeconds(pendingTtlSeconds);
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.localTtlMillis = TimeUnit.SECONDS.toMillis(localTtlSeconds);
+    }
+
+    @Override
+    public <T> T execute(String scope,
+                         String idempotencyKey,
+                         String fingerprint,
+                         Class<T> resultType,
+                         Callable<T> action) throws Exception {
+        return executeAsync(scope, idempotencyKey, fingerprint, resultType, () -> {
+            try {
+                return CompletableFuture.completedFuture(action.call());
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    @Override
+    public <T> T executeAsync(String scope,
+                              String idempotencyKey,
+                              String fingerprint,
+                              Class<T> resultType,
+                              Callable<CompletableFuture<T>> action) throws Exception {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return awaitResult(action.call(), null);
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidParamException("Idempotency-Key must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        String key = KEY_PREFIX + scope + ":" + idempotencyKey;
+        // retry vừa xong trên pod này: trả luôn, không hỏi Redis
+        LocalResult local = recentResults.get(key);
+        if (local != null && local.expiresAt() > System.currentTimeMillis()) {
+            return replay(local.stored(), fingerprint, resultType);
+        }
+        CompletableFuture<StoredResult> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResult> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return replay(await(running), fingerprint, resultType);
+        }
+        StoredResult existing;
+        try {
+            existing = acquire(key, fingerprint);
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            inFlight.remove(key, mine);
+            throw e;
+        }
+        if (existing != null) {
+            remember(key, existing);
+            mine.complete(existing);
+            inFlight.remove(key, mine);
+            return replay(existing, fingerprint, resultType);
+        }
+        CompletableFuture<T> result;
+        try {
+            result = action.call();
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        // ghi kết quả khi action thực sự xong, kể cả khi caller đã hết thời gian chờ;
+        // tới lúc đó duplicate trên pod này chờ future, pod khác thấy marker PENDING
+        result.whenComplete((value, error) -> {
+            try {
+                if (error != null) {
+                    delete(key);
+                    mine.completeExceptionally(unwrap(error));
+                    return;
+                }
+                StoredResult completed = new StoredResult(COMPLETED, fingerprint, objectMapper.writeValueAsString(value));
+                write(key, completed, resultTtl);
+                remember(key, completed);
+                mine.complete(completed);
+            } catch (Exception e) {
+                delete(key);
+                mine.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        });
+        return awaitResult(result, () -> extendPending(key, fingerprint));
+    }
+
+    //null = đã giành được marker PENDING, khác null = lần chạy trước đã xong
+    private StoredResult acquire(String key, String fingerprint) throws Exception {
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        while (!tryAcquire(key, fingerprint)) {
+            StoredResult stored = read(key);
+            if (stored != null && COMPLETED.equals(stored.state())) {
+                return stored;
+            }
+            if (stored != null && !stored.fingerprint().equals(fingerprint)) {
+                throw new ConflictException("Idempotency-Key was already used with a different request");
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new ConflictException("A request with this Idempotency-Key is still being processed");
+            }
+            //marker biến mất (lần chạy đầu lỗi) thì vòng sau sẽ giành được lock
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        return null;
+    }
+
+    private <T> T awaitResult(CompletableFuture<T> result, Runnable onTimeout) throws Exception {
+        try {
+            return result.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (onTimeout != null) {
+                onTimeout.run();
+            }
+            //action vẫn đang chạy và có thể thành công: retry cùng Idempotency-Key sẽ nhận đúng kết quả đó
+            throw new ConflictException("Request is still being processed, retry with the same Idempotency-Key");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    //chỉ gia hạn khi marker vẫn là PENDING của mình, không đè lên kết quả vừa ghi
+    private void extendPending(String key, String fingerprint) {
+        try {
+            String pending = objectMapper.writeValueAsString(new StoredResult(PENDING, fingerprint, null));
+            redisTemplate.execute(EXTEND_PENDING, List.of(key), pending, pendingTtl.toMillis());
+        } catch (Exception e) {
+            log.warn("Cannot extend idempotency marker {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void remember(String key, StoredResult stored) {
+        recentResults.put(key, new LocalResult(stored, System.currentTimeMillis() + localTtlMillis));
+    }
+
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof Exception exception) {
+            return exception;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private StoredResult await(CompletableFuture<StoredResult> running) throws Exception {
+        try {
+            return running.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ConflictException("A request with this Idempotency-Key is still being processed");
+        } catch (ExecutionException e) {
+            //duplicate nhận cùng kết quả với lần chạy đầu, kể cả lỗi
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private <T> T replay(StoredResult stored, String fingerprint, Class<T> resultType) throws Exception {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            throw new ConflictException("Idempotency-Key was already used with a different request");
+        }
+        return objectMapper.readValue(stored.result(), resultType);
+    }
+
+    private boolean tryAcquire(String key, String fingerprint) {
+        try {
+            String pending = objectMapper.writeValueAsString(new StoredResult(PENDING, fingerprint, null));
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, pending, lockTtl));
+        } catch (Exception e) {
+            log.warn("Idempotency store unavailable, falling back to in-process protection: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    private StoredResult read(String key) {
+        try {
+            String json = (String) redisTemplate.opsForValue().get(key);
+            return json == null ? null : objectMapper.readValue(json, StoredResult.class);
+        } catch (Exception e) {
+            log.warn("Cannot read idempotency record {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(String key, StoredResult stored, Duration ttl) {
+        try {
+            redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(stored), ttl);
+        } catch (Exception e) {
+            log.warn("Cannot store idempotency record {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            redisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("Cannot delete idempotency record {}: {}", key, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpiredLocalResults() {
+        long now = System.currentTimeMillis();
+        recentResults.values().removeIf(local -> local.expiresAt() <= now);
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.demo.services;
+
+import com.example.demo.components.ImageCache;
+import com.example.demo.components.ImageVariant;
+import com.example.demo.models.ImageBlob;
+import com.example.demo.repositories.ImageBlobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed store for product images.
+ * Each upload is saved once as {@code <upload-dir>/blobs/ab/cd/<sha256>.<ext>}; identical uploads
+ * resolve to the same blob and only bump its reference count in {@code image_blobs}.
+ * Blobs whose count drops to zero are removed by {@link #collectGarbage()} after a grace period;
+ * GC holds the blob's row lock while deleting its files, and an upload always moves its own copy
+ * into place after {@code register}, so a re-upload racing with GC never ends up without a file.
+ * Names without a hash (uploads made before the store existed) are still read from {@code <upload-dir>/}.
+ * Resized variants mirror the same layout under {@code <upload-dir>/variants/<variant>/}.
+ * Concurrent requests for a missing variant share one resize, written to a temp file and moved into place.
+ * Formats that ImageIO cannot decode (e.g. webp) are always served as the original file.
+ */
+@Service
+public class ImageService implements IImageService {
+    private static final Logger logger = LoggerFactory.getLogger(ImageService.class);
+    private static final Map<String, MediaType> CONTENT_TYPES = Map.of(
+            "jpg", MediaType.IMAGE_JPEG,
+            "jpeg", MediaType.IMAGE_JPEG,
+            "png", MediaType.IMAGE_PNG,
+            "gif", MediaType.IMAGE_GIF,
+            "webp", MediaType.parseMediaType("image/webp")
+    );
+
+    private static final byte[] PNG_SIGNATURE = {
+            (byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A
+    };
+
+    private static final Pattern BLOB_NAME = Pattern.compile("^[0-9a-f]{64}\\.[a-z0-9]+$");
+
+    private final Path uploadDir;
+    private final Executor imageUploadExecutor;
+    private final ImageBlobRepository imageBlobRepository;
+    private final ImageCache imageCache;
+    private final TransactionTemplate transactionTemplate;
+    //đường dẫn variant -> lượt tạo đang chạy: request song song cùng variant chỉ resize 1 lần
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> variantsInFlight = new ConcurrentHashMap<>();
+
+    @Value("${image.gc.grace-minutes:60}")
+    private long gcGraceMinutes;
+
+    public ImageService(@Value("${image.upload-dir:upload}") String uploadDir,
+                        @Qualifier("imageUploadExecutor") Executor imageUploadExecutor,
+                        ImageBlobRepository imageBlobRepository,
+                        ImageCache imageCache,
+                        PlatformTransactionManager transactionManager) {
+        this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.imageUploadExecutor = imageUploadExecutor;
+        this.imageBlobRepository = imageBlobRepository;
+        this.imageCache = imageCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public String storeFile(MultipartFile file) throws IOException {
+        String extension = detectImageType(file);
+        if (extension == null) {
+            throw new IOException("Invalid image format");
+        }
+        // ghi ra file tạm đồng thời tính SHA-256, rồi mới biết blob đã tồn tại hay chưa
+        Path tempDir = uploadDir.resolve("tmp");
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "upload", ".tmp");
+        try {
+            MessageDigest digest = newSha256();
+            long size;
+            try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+                size = Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String blobName = HexFormat.of().formatHex(digest.digest()) + "." + extension;
+            // đăng ký trước khi move: nếu GC đang xóa blob này thì register chờ GC commit xong
+            imageBlobRepository.register(blobName, size);
+            // luôn move bản của mình vào chỗ (cùng nội dung), không tin Files.exists vì GC có thể vừa xóa file
+            Path destination = blobPath(blobName);
+            Files.createDirectories(destination.getParent());
+            Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (ImageVariant variant : ImageVariant.values()) {
+                if (variant != ImageVariant.ORIGINAL) {
+                    generateVariantOnce(destination, variant);
+                }
+            }
+            return blobName;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public List<String> storeFiles(List<MultipartFile> files) throws IOException {
+        List<CompletableFuture<String>> futures = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return storeFile(file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, imageUploadExecutor))
+                .toList();
+        List<String> fileNames = new ArrayList<>();
+        for (CompletableFuture<String> future : futures) {
+            try {
+                fileNames.add(future.join());
+            } catch (CompletionException e) {
+                // blob đã ghi mà không có ai tham chiếu sẽ được GC dọn sau
+                throw e.getCause() instanceof UncheckedIOException io
+                        ? io.getCause()
+                        : new IOException(e.getCause());
+            }
+        }
+        return fileNames;
+    }
+
+    @Scheduled(fixedDelayString = "${image.gc.interval-ms:3600000}")
+    public void collectGarbage() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(gcGraceMinutes);
+        List<ImageBlob> candidates = imageBlobRepository.findUnreferenced(cutoff, PageRequest.of(0, 500));
+        int deleted = 0;
+        for (ImageBlob blob : candidates) {
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> deleteBlob(blob.getName(), cutoff)))) {
+                    deleted++;
+                }
+            } catch (UncheckedIOException e) {
+                logger.warn("Cannot delete image blob {}: {}", blob.getName(), e.getMessage());
+            }
+        }
+        if (deleted > 0) {
+            logger.info("Image GC removed {} unreferenced blobs", deleted);
+        }
+    }
+
+    // khóa row -> xóa file -> xóa row trong cùng transaction; lỗi xóa file thì rollback, row còn nguyên
+    private boolean deleteBlob(String blobName, LocalDateTime cutoff) {
+        if (imageBlobRepository.lockUnreferenced(blobName, cutoff).isEmpty()) {
+            return false;
+        }
+        try {
+            Path original = blobPath(blobName);
+            for (ImageVariant variant : ImageVariant.values()) {
+                if (variant != ImageVariant.ORIGINAL) {
+                    Path variantPath = variantPath(original, variant);
+                    imageCache.evict(variantPath);
+                    Files.deleteIfExists(variantPath);
+                }
+            }
+            imageCache.evict(original);
+            Files.deleteIfExists(original);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return imageBlobRepository.deleteIfUnreferenced(blobName, cutoff) == 1;
+    }
+
+    @Override
+    public String detectImageType(MultipartFile file) throws IOException {
+        byte[] header = new byte[12];
+        int read;
+        try (InputStream inputStream = file.getInputStream()) {
+            read = inputStream.readNBytes(header, 0, header.length);
+        }
+        if (read >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (read >= 8 && startsWith(header, PNG_SIGNATURE)) {
+            return "png";
+        }
+        if (read >= 6 && (startsWith(header, "GIF87a".getBytes(StandardCharsets.US_ASCII))
+                || startsWith(header, "GIF89a".getBytes(StandardCharsets.US_ASCII)))) {
+            return "gif";
+        }
+        if (read >= 12 && startsWith(header, "RIFF".getBytes(StandardCharsets.US_ASCII))
+                && new String(header, 8, 4, StandardCharsets.US_ASCII).equals("WEBP")) {
+            return "webp";
+        }
+        return null;
+    }
+
+    @Override
+    public Path getImage(String imageName, ImageVariant variant) throws IOException {
+        Path original = isContentAddressed(imageName)
+                ? blobPath(imageName)
+                : resolveInside(uploadDir, imageName);
+        if (!Files.isRegularFile(original)) {
+            return null;
+        }
+        if (variant == ImageVariant.ORIGINAL) {
+            return original;
+        }
+        Path variantPath = variantPath(original, variant);
+        if (Files.isRegularFile(variantPath)) {
+            return variantPath;
+        }
+        Path generated = generateVariantOnce(original, variant);
+        return generated != null ? generated : original;
+    }
+
+    @Override
+    public MediaType getContentType(Path imagePath) {
+        String extension = StringUtils.getFilenameExtension(imagePath.getFileName().toString());
+        MediaType mediaType = extension == null ? null : CONTENT_TYPES.get(extension.toLowerCase());
+        if (mediaType != null) {
+            return mediaType;
+        }
+        return MediaTypeFactory.getMediaType(imagePath.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    //blob: sha256 của nội dung + variant; ảnh cũ: theo kích thước + lần sửa cuối. Ảnh không tồn tại: null
+    @Override
+    public String getETag(String imageName, ImageVariant variant) throws IOException {
+        if (isContentAddressed(imageName)) {
+            if (!Files.isRegularFile(blobPath(imageName))) {
+                return null;
+            }
+            return "\"" + imageName.substring(0, 64) + "-" + variant.getCode() + "\"";
+        }
+        Path original = resolveInside(uploadDir, imageName);
+        if (!Files.isRegularFile(original)) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(original, BasicFileAttributes.class);
+        String key = variant.getCode() + "/" + imageName + "/" + attributes.size()
+                + "/" + attributes.lastModifiedTime().toMillis();
+        return "\"" + DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    @Override
+    public boolean isContentAddressed(String imageName) {
+        return BLOB_NAME.matcher(imageName).matches();
+    }
+
+    private Path generateVariantOnce(Path original, ImageVariant variant) throws IOException {
+        Path target = variantPath(original, variant);
+        String key = target.toString();
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> existing = variantsInFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+        try {
+            // lượt tạo trước có thể vừa move xong rồi rời map
+            Path generated = Files.isRegularFile(target) ? target : generateVariant(original, variant);
+            mine.complete(generated);
+            return generated;
+        } catch (Throwable e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            variantsInFlight.remove(key, mine);
+        }
+    }
+
+    private Path generateVariant(Path original, ImageVariant variant) throws IOException {
+        String format = outputFormat(original);
+        if (format == null) {
+            return null;
+        }
+        BufferedImage source = ImageIO.read(original.toFile());
+        if (source == null) {
+            return null;
+        }
+        Path target = variantPath(original, variant);
+        Files.createDirectories(target.getParent());
+        BufferedImage resized = resize(source, variant.getMaxSize(), "jpg".equals(format));
+        // ghi ra file tạm rồi move để request song song không đọc phải file ghi dở
+        Path temp = Files.createTempFile(target.getParent(), "variant", ".tmp");
+        try {
+            if (!ImageIO.write(resized, format, temp.toFile())) {
+                return null;
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        logger.info("Generated {} variant for {}", variant.getCode(), original.getFileName());
+        return target;
+    }
+
+    private BufferedImage resize(BufferedImage source, int maxSize, boolean opaque) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxSize / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage resized = new BufferedImage(targetWidth, targetHeight,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (opaque) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, targetWidth, targetHeight);
+            }
+            graphics.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    private Path blobPath(String blobName) {
+        // 2 cấp thư mục theo 4 ký tự đầu của hash để mỗi thư mục chỉ chứa ít file
+        return uploadDir.resolve("blobs")
+                .resolve(blobName.substring(0, 2))
+                .resolve(blobName.substring(2, 4))
+                .resolve(blobName);
+    }
+
+    private Path variantPath(Path original, ImageVariant variant) {
+        String fileName = original.getFileName().toString();
+        Path variantDir = uploadDir.resolve("variants").resolve(variant.getCode());
+        if (BLOB_NAME.matcher(fileName).matches()) {
+            variantDir = variantDir.resolve(fileName.substring(0, 2)).resolve(fileName.substring(2, 4));
+        }
+        return variantDir.resolve(fileName);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String outputFormat(Path original) {
+        String extension = StringUtils.getFilenameExtension(original.getFileName().toString());
+        if (extension == null) {
+            return null;
+        }
+        return switch (extension.toLowerCase()) {
+            case "jpg", "jpeg" -> "jpg";
+            case "png" -> "png";
+            default -> null;
+        };
+    }
+
+    private Path resolveInside(Path directory, String name) throws IOException {
+        Path resolved = directory.resolve(name).normalize();
+        if (!resolved.startsWith(directory)) {
+            throw new IOException("Invalid image name: " + name);
+        }
+        return resolved;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
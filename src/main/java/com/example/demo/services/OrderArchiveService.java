@@ -0,0 +1,106 @@
+package com.example.demo.services;
+
+import com.example.demo.components.OrderStatusIndex;
+import com.example.demo.models.OrderStatus;
+import com.example.demo.repositories.OrderDetailRepository;
+import com.example.demo.repositories.OrderRepository;
+import com.example.demo.repositories.OrderStatusHistoryRepository;
+import com.example.demo.untils.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Moves delivered / cancelled / soft-deleted orders older than {@code orders.archive.after-months}
+ * from {@code orders}, {@code order_details} and {@code order_status_history} into their
+ * {@code _archive} tables. Each batch is copied and deleted in its own short transaction,
+ * so the hot tables are never locked for the whole run and a failure loses at most one batch of progress.
+ */
+@Service
+@Slf4j
+public class OrderArchiveService implements IOrderArchiveService {
+    private static final List<String> CLOSED_STATUSES = Arrays.stream(OrderStatus.values())
+            .filter(OrderStatus::isTerminal)
+            .map(OrderStatus::getCode)
+            .toList();
+
+    private final OrderRepository orderRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final OrderStatusHistoryRepository orderStatusHistoryRepository;
+    private final IOrderHistoryCacheService orderHistoryCache;
+    private final OrderStatusIndex orderStatusIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int afterMonths;
+    private final int batchSize;
+
+    public OrderArchiveService(OrderRepository orderRepository,
+                               OrderDetailRepository orderDetailRepository,
+                               OrderStatusHistoryRepository orderStatusHistoryRepository,
+                               IOrderHistoryCacheService orderHistoryCache,
+                               OrderStatusIndex orderStatusIndex,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${orders.archive.enabled:true}") boolean enabled,
+                               @Value("${orders.archive.after-months:6}") int afterMonths,
+                               @Value("${orders.archive.batch-size:500}") int batchSize) {
+        this.orderRepository = orderRepository;
+        this.orderDetailRepository = orderDetailRepository;
+        this.orderStatusHistoryRepository = orderStatusHistoryRepository;
+        this.orderHistoryCache = orderHistoryCache;
+        this.orderStatusIndex = orderStatusIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.afterMonths = afterMonths;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${orders.archive.cron:0 0 3 * * *}")
+    public void archiveOnSchedule() {
+        if (enabled) {
+            archiveClosedOrders();
+        }
+    }
+
+    @Override
+    public int archiveClosedOrders() {
+        LocalDate cutoff = LocalDate.now().minusMonths(afterMonths);
+        int total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+            total += moved;
+        } while (moved == batchSize);
+        if (total > 0) {
+            log.info("Archived {} orders placed before {}", total, cutoff);
+        }
+        return total;
+    }
+
+    //chi tiết trước rồi mới tới đơn: order_details có foreign key sang orders
+    private int archiveBatch(LocalDate cutoff) {
+        List<Long> orderIds = orderRepository.lockArchivableIds(cutoff, CLOSED_STATUSES, batchSize);
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        List<Long> userIds = orderRepository.findUserIdsByIds(orderIds);
+        orderDetailRepository.copyToArchive(orderIds);
+        orderRepository.copyToArchive(orderIds);
+        orderStatusHistoryRepository.copyToArchive(orderIds);
+        orderStatusHistoryRepository.deleteByOrderIds(orderIds);
+        orderDetailRepository.deleteByOrderIds(orderIds);
+        orderRepository.deleteByIds(orderIds);
+        TransactionUtils.afterCommit(() -> {
+            //đơn xoá mềm chưa kết thúc có thể vẫn nằm trong index đến lần reload sau
+            orderIds.forEach(orderStatusIndex::remove);
+            orderHistoryCache.evict(userIds);
+        });
+        return orderIds.size();
+    }
+}
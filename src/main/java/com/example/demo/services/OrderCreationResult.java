@@ -0,0 +1,18 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Order;
+
+//kết quả của từng đơn trong 1 lô: đơn lỗi không làm hỏng các đơn khác
+public record OrderCreationResult(Order order, Exception error) {
+    public static OrderCreationResult success(Order order) {
+        return new OrderCreationResult(order, null);
+    }
+
+    public static OrderCreationResult failure(Exception error) {
+        return new OrderCreationResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -11,7 +11,9 @@ import com.example.demo.repositories.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -19,6 +21,7 @@ public class OrderDetailService implements IOrderDetailService{
     private final OrderDetailRepository orderDetailRepository;
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;
+    private final IOrderHistoryCacheService orderHistoryCache;
 
     @Override
     public OrderDetail createOrderDetail(OrderDetailDTO orderDetailDTO) throws Exception {
@@ -36,7 +39,9 @@ public class OrderDetailService implements IOrderDetailService{
                 .totalMoney(orderDetailDTO.getTotalMoney())
                 .color(orderDetailDTO.getColor())
                 .build();
-        return orderDetailRepository.save(orderDetail);
+        OrderDetail savedOrderDetail = orderDetailRepository.save(orderDetail);
+        orderHistoryCache.evict(List.of(order.getUser().getId()));
+        return savedOrderDetail;
     }
 
     @Override
@@ -58,18 +63,23 @@ public class OrderDetailService implements IOrderDetailService{
         Product existingProduct = productRepository.findById(orderDetailDTO.getProductId())
                 .orElseThrow(() -> new DataNotFoundException(
                         "Cannot find product with id: " + orderDetailDTO.getProductId()));
+        Long oldUserId = orderDetailRepository.findUserIdById(id).orElse(null);//đơn cũ có thể thuộc user khác
         existingOrderDetail.setPrice(orderDetailDTO.getPrice());
         existingOrderDetail.setNumberOfProducts(orderDetailDTO.getNumberOfProducts());
         existingOrderDetail.setTotalMoney(orderDetailDTO.getTotalMoney());
         existingOrderDetail.setColor(orderDetailDTO.getColor());
         existingOrderDetail.setOrder(existingOrder);
         existingOrderDetail.setProduct(existingProduct);
-        return orderDetailRepository.save(existingOrderDetail);
+        OrderDetail savedOrderDetail = orderDetailRepository.save(existingOrderDetail);
+        orderHistoryCache.evict(Arrays.asList(oldUserId, existingOrder.getUser().getId()));
+        return savedOrderDetail;
     }
 
     @Override
     public void deleteById(Long id) {
+        Optional<Long> userId = orderDetailRepository.findUserIdById(id);
         orderDetailRepository.deleteById(id);
+        userId.ifPresent(existingUserId -> orderHistoryCache.evict(List.of(existingUserId)));
     }
 
     @Override
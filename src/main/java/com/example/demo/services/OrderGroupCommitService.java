@@ -0,0 +1,152 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderDTO;
+import com.example.demo.models.Order;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for synchronous checkout: concurrent {@link #submit} calls arriving within
+ * {@code orders.group-commit.max-wait-ms} are written together by {@link IOrderService#createOrders}
+ * in one transaction (one commit/fsync for the group), then every caller's future is completed with
+ * its own order or its own error. If the group transaction fails as a whole, its orders are retried
+ * one by one so that a single bad order cannot fail the others.
+ * Callers get the future itself rather than a blocking call with a timeout: an order that is still
+ * queued when the caller gives up will commit later, and whoever waits on the future (see
+ * {@link IIdempotencyService#executeAsync}) still learns its outcome.
+ */
+@Service
+@Slf4j
+public class OrderGroupCommitService implements IOrderGroupCommitService {
+    private final IOrderService orderService;
+    private final boolean enabled;
+    private final int flushers;
+    private final int maxBatchSize;
+    private final long maxWaitMillis;
+    private final BlockingQueue<PendingOrder> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> flusherThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    private record PendingOrder(OrderDTO orderDTO, CompletableFuture<Order> result) {
+    }
+
+    public OrderGroupCommitService(IOrderService orderService,
+                                   @Value("${orders.group-commit.enabled:true}") boolean enabled,
+                                   @Value("${orders.group-commit.flushers:2}") int flushers,
+                                   @Value("${orders.group-commit.max-batch-size:50}") int maxBatchSize,
+                                   @Value("${orders.group-commit.max-wait-ms:5}") long maxWaitMillis) {
+        this.orderService = orderService;
+        this.enabled = enabled;
+        this.flushers = flushers;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @PostConstruct
+    public void startFlushers() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < flushers; i++) {
+            flusherThreads.add(Thread.ofPlatform()
+                    .name("order-group-commit-" + i)
+                    .daemon(true)
+                    .start(this::runFlusher));
+        }
+    }
+
+    @PreDestroy
+    public void stopFlushers() {
+        running = false;
+        flusherThreads.forEach(Thread::interrupt);
+        PendingOrder pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(new IllegalStateException("Application is shutting down"));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Order> submit(OrderDTO orderDTO) {
+        if (!running) {
+            try {
+                return CompletableFuture.completedFuture(orderService.createOrder(orderDTO));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        CompletableFuture<Order> result = new CompletableFuture<>();
+        queue.add(new PendingOrder(orderDTO, result));
+        return result;
+    }
+
+    private void runFlusher() {
+        List<PendingOrder> group = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                // chờ đơn đầu tiên, sau đó gom thêm các đơn tới trong vòng max-wait-ms
+                PendingOrder first = queue.take();
+                group.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                while (group.size() < maxBatchSize) {
+                    PendingOrder next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                failAll(group, new IllegalStateException("Application is shutting down"));
+                return;
+            } catch (Throwable e) {
+                //Error hoặc lỗi ngoài commit(): trả lỗi cho cả nhóm để caller không chờ mãi, flusher chạy tiếp
+                log.error("Group commit flusher failed on {} orders", group.size(), e);
+                failAll(group, e);
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    //future đã complete thì completeExceptionally không đổi gì
+    private void failAll(List<PendingOrder> group, Throwable error) {
+        group.forEach(pending -> pending.result().completeExceptionally(error));
+    }
+
+    private void commit(List<PendingOrder> group) {
+        List<OrderCreationResult> results;
+        try {
+            results = orderService.createOrders(group.stream().map(PendingOrder::orderDTO).toList());
+        } catch (Exception e) {
+            log.warn("Group commit of {} orders failed, retrying one by one: {}", group.size(), e.getMessage());
+            results = group.stream().map(pending -> createIndividually(pending.orderDTO())).toList();
+        }
+        for (int i = 0; i < group.size(); i++) {
+            OrderCreationResult result = results.get(i);
+            if (result.isSuccess()) {
+                group.get(i).result().complete(result.order());
+            } else {
+                group.get(i).result().completeExceptionally(result.error());
+            }
+        }
+    }
+
+    private OrderCreationResult createIndividually(OrderDTO orderDTO) {
+        try {
+            return orderService.createOrders(List.of(orderDTO)).get(0);
+        } catch (Exception e) {
+            return OrderCreationResult.failure(e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.demo.services;
+
+import com.example.demo.responses.OrderResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Newest-first window of each user's orders in a Redis list {@code orders:user:<userId>},
+ * at most {@code orders.history-cache.window} entries, each an {@link OrderResponse} JSON string.
+ * A list that holds all of the user's orders ends with an {@value #END} marker, so a user with no
+ * orders, or a page past the last order, is answered from Redis as an empty page rather than a miss.
+ * <p>
+ * Every write bumps a per-user version ({@code orders:user:<userId>:version}): new orders are pushed
+ * onto lists that already exist (skipped when the loader already saw them), any other change deletes
+ * the list. A reader takes the version with {@link #beginLoad} before reading the database and
+ * {@link #put} only stores its result if no write happened in between, so a load that raced a write
+ * never caches a stale list. Redis errors are logged and treated as a miss.
+ */
+@Service
+@Slf4j
+public class OrderHistoryCacheService implements IOrderHistoryCacheService {
+    private static final String KEY_PREFIX = "orders:user:";
+    private static final String VERSION_SUFFIX = ":version";
+    private static final String END = "#end";
+    //null = chưa nạp, hoặc range vượt cửa sổ mà list không chứa đủ đơn; list rỗng = trang nằm sau đơn cuối
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 then return false end " +
+            "if tonumber(ARGV[2]) >= tonumber(ARGV[3]) and redis.call('lindex', KEYS[1], -1) ~= ARGV[4] then " +
+            "  return false " +
+            "end " +
+            "return redis.call('lrange', KEYS[1], ARGV[1], ARGV[2])",
+            List.class);
+    //ghi đè list chỉ khi version chưa đổi từ lúc beginLoad
+    private static final RedisScript<Long> PUT = new DefaultRedisScript<>(
+            "if (redis.call('get', KEYS[2]) or '0') ~= ARGV[1] then return 0 end " +
+            "redis.call('del', KEYS[1]) " +
+            "for i = 3, #ARGV do redis.call('rpush', KEYS[1], ARGV[i]) end " +
+            "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "return 1",
+            Long.class);
+    //loader đọc DB sau commit nhưng trước afterCommit thì list đã có đơn này: không push trùng
+    private static final RedisScript<Long> PUSH = new DefaultRedisScript<>(
+            "redis.call('incr', KEYS[2]) " +
+            "redis.call('pexpire', KEYS[2], ARGV[4]) " +
+            "if redis.call('exists', KEYS[1]) == 0 then return 0 end " +
+            "for _, item in ipairs(redis.call('lrange', KEYS[1], 0, -1)) do " +
+            "  local ok, order = pcall(function() return cjson.decode(cjson.decode(item)) end) " +
+            "  if ok and type(order) == 'table' and tostring(order.id) == ARGV[2] then return 0 end " +
+            "end " +
+            "if redis.call('lpush', KEYS[1], ARGV[1]) > tonumber(ARGV[3]) then " +
+            "  redis.call('ltrim', KEYS[1], 0, tonumber(ARGV[3]) - 1) " +
+            "end " +
+            "return 1",
+            Long.class);
+    private static final RedisScript<Long> EVICT = new DefaultRedisScript<>(
+            "redis.call('del', KEYS[1]) " +
+            "redis.call('incr', KEYS[2]) " +
+            "redis.call('pexpire', KEYS[2], ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final boolean enabled;
+    private final int windowSize;
+    private final Duration ttl;
+
+    public OrderHistoryCacheService(RedisTemplate<String, Object> redisTemplate,
+                                    @Value("${orders.history-cache.enabled:true}") boolean enabled,
+                                    @Value("${orders.history-cache.window:50}") int windowSize,
+                                    @Value("${orders.history-cache.ttl-minutes:30}") long ttlMinutes) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.windowSize = windowSize;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+    }
+
+    @Override
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    //null = không có trong cache (hoặc tắt cache / Redis lỗi), caller đọc DB;
+    //trang vượt cửa sổ chỉ trả từ cache khi list đã chứa toàn bộ đơn của user
+    @Override
+    public List<OrderResponse> getRange(Long userId, int offset, int limit) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            List<?> values = redisTemplate.execute(READ, List.of(keyOf(userId)),
+                    (long) offset, offset + limit - 1L, (long) windowSize, END);
+            if (values == null) {
+                return null;
+            }
+            List<OrderResponse> orders = new ArrayList<>(values.size());
+            for (Object value : values) {
+                if (!END.equals(value)) {
+                    orders.add(objectMapper.readValue((String) value, OrderResponse.class));
+                }
+            }
+            return orders;
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Cannot read order history of user {} from Redis: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    //gọi trước khi đọc DB; -1 = Redis lỗi, put sau đó sẽ bỏ qua
+    @Override
+    public long beginLoad(Long userId) {
+        if (!enabled) {
+            return -1;
+        }
+        try {
+            Object version = redisTemplate.opsForValue().get(versionKeyOf(userId));
+            return version instanceof Number number ? number.longValue() : 0L;
+        } catch (DataAccessException e) {
+            log.warn("Cannot read order history version of user {}: {}", userId, e.getMessage());
+            return -1;
+        }
+    }
+
+    //newestOrders ít hơn window = đã đủ toàn bộ đơn của user, kể cả khi rỗng
+    @Override
+    public void put(Long userId, long version, List<OrderResponse> newestOrders) {
+        if (!enabled || version < 0) {
+            return;
+        }
+        try {
+            List<Object> args = new ArrayList<>();
+            args.add(version);
+            args.add(ttl.toMillis());
+            for (OrderResponse order : newestOrders.subList(0, Math.min(newestOrders.size(), windowSize))) {
+                args.add(objectMapper.writeValueAsString(order));
+            }
+            if (newestOrders.size() < windowSize) {
+                args.add(END);
+            }
+            redisTemplate.execute(PUT, List.of(keyOf(userId), versionKeyOf(userId)), args.toArray());
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Cannot cache order history of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    //chỉ push khi list đã có: list chưa nạp thì lần đọc sau lấy từ DB, đã gồm đơn này
+    @Override
+    public void pushCreated(Long userId, OrderResponse order) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.execute(PUSH, List.of(keyOf(userId), versionKeyOf(userId)),
+                    objectMapper.writeValueAsString(order), order.getId(), (long) windowSize, ttl.toMillis());
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Cannot push order {} to history cache, evicting: {}", order.getId(), e.getMessage());
+            evict(List.of(userId));
+        }
+    }
+
+    @Override
+    public void evict(Collection<Long> userIds) {
+        if (!enabled || userIds.isEmpty()) {
+            return;
+        }
+        List<Long> distinctUserIds = userIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        for (Long userId : distinctUserIds) {
+            try {
+                redisTemplate.execute(EVICT, List.of(keyOf(userId), versionKeyOf(userId)), ttl.toMillis());
+            } catch (DataAccessException e) {
+                log.warn("Cannot evict order history of user {}: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    private static String keyOf(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private static String versionKeyOf(Long userId) {
+        return KEY_PREFIX + userId + VERSION_SUFFIX;
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.CartItemDTO;
+import com.example.demo.dtos.OrderDTO;
+import com.example.demo.exceptions.DataNotFoundException;
+import com.example.demo.exceptions.InvalidParamException;
+import com.example.demo.models.Order;
+import com.example.demo.repositories.OrderRepository;
+import com.example.demo.repositories.UserRepository;
+import com.example.demo.responses.OrderIntakeResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Asynchronous checkout: {@link #submit} validates the order cheaply, appends it to the
+ * {@value #STREAM_KEY} Redis stream and returns a ticket; a pool of workers reads the stream
+ * through the {@value #GROUP} consumer group and commits up to {@code orders.intake.batch-size}
+ * orders per transaction via {@link IOrderService#createOrders}. Clients poll the ticket status.
+ * Messages are acknowledged only after their status is recorded, and a restarted worker first
+ * re-reads its own unacknowledged messages; tickets already finished are skipped. Messages left
+ * pending by a consumer that is gone (pod rescheduled under a new name) are claimed by the
+ * live workers once idle for {@code orders.intake.claim-min-idle-ms}.
+ * Each order stores its ticket under a unique key in the same transaction, so a message that is
+ * processed twice (crash between commit and ack, or claimed from a slow worker) yields one order.
+ */
+@Service
+@Slf4j
+public class OrderIntakeService implements IOrderIntakeService {
+    public static final String STREAM_KEY = "orders:intake";
+    public static final String GROUP = "order-writers";
+    private static final String STATUS_KEY_PREFIX = "orders:intake:status:";
+    public static final String QUEUED = "QUEUED";
+    public static final String COMMITTED = "COMMITTED";
+    public static final String FAILED = "FAILED";
+    //consumer không đọc gì lâu hơn mức này và không còn message pending thì bị xóa khỏi group
+    private static final Duration DEAD_CONSUMER_IDLE = Duration.ofHours(1);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final IOrderService orderService;
+    private final UserRepository userRepository;
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final boolean enabled;
+    private final int workers;
+    private final int batchSize;
+    private final String consumerName;
+    private final Duration statusTtl;
+    private final Duration claimMinIdle;
+    private final long claimIntervalMillis;
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    public OrderIntakeService(RedisTemplate<String, Object> redisTemplate,
+                              IOrderService orderService,
+                              UserRepository userRepository,
+                              OrderRepository orderRepository,
+                              @Value("${orders.intake.enabled:true}") boolean enabled,
+                              @Value("${orders.intake.workers:2}") int workers,
+                              @Value("${orders.intake.batch-size:50}") int batchSize,
+                              @Value("${orders.intake.consumer-name:${HOSTNAME:local}}") String consumerName,
+                              @Value("${orders.intake.status-ttl-hours:24}") long statusTtlHours,
+                              @Value("${orders.intake.claim-min-idle-ms:60000}") long claimMinIdleMillis,
+                              @Value("${orders.intake.claim-interval-ms:30000}") long claimIntervalMillis) {
+        this.redisTemplate = redisTemplate;
+        this.orderService = orderService;
+        this.userRepository = userRepository;
+        this.orderRepository = orderRepository;
+        this.enabled = enabled;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.consumerName = consumerName;
+        this.statusTtl = Duration.ofHours(statusTtlHours);
+        this.claimMinIdle = Duration.ofMillis(claimMinIdleMillis);
+        this.claimIntervalMillis = claimIntervalMillis;
+    }
+
+    @Override
+    public OrderIntakeResponse submit(OrderDTO orderDTO) throws Exception {
+        //chỉ kiểm tra rẻ ở đây, tồn kho do worker kiểm tra trong transaction
+        List<CartItemDTO> cartItems = orderDTO.getCartItems();
+        if (cartItems == null || cartItems.isEmpty()) {
+            throw new InvalidParamException("Cart is empty");
+        }
+        if (cartItems.size() != cartItems.stream().map(CartItemDTO::getProductId).distinct().count()) {
+            throw new InvalidParamException("Duplicate data");
+        }
+        if (orderDTO.getShippingDate() != null && orderDTO.getShippingDate().isBefore(LocalDate.now())) {
+            throw new InvalidParamException("Date must be at least today !");
+        }
+        if (orderDTO.getUserId() == null || !userRepository.existsById(orderDTO.getUserId())) {
+            throw new DataNotFoundException("Cannot find user with id: " + orderDTO.getUserId());
+        }
+        String ticket = UUID.randomUUID().toString();
+        writeStatus(ticket, QUEUED, null, null);
+        redisTemplate.opsForStream().add(StreamRecords.newRecord()
+                .in(STREAM_KEY)
+                .ofMap(Map.of("ticket", ticket, "order", objectMapper.writeValueAsString(orderDTO))));
+        return OrderIntakeResponse.builder()
+                .ticket(ticket)
+                .status(QUEUED)
+                .build();
+    }
+
+    @Override
+    public OrderIntakeResponse getStatus(String ticket) throws DataNotFoundException {
+        Map<Object, Object> status = redisTemplate.opsForHash().entries(STATUS_KEY_PREFIX + ticket);
+        if (status.isEmpty()) {
+            throw new DataNotFoundException("Cannot find order ticket: " + ticket);
+        }
+        Object orderId = status.get("order_id");
+        return OrderIntakeResponse.builder()
+                .ticket(ticket)
+                .status((String) status.get("status"))
+                .orderId(orderId == null ? null : Long.valueOf(orderId.toString()))
+                .message((String) status.get("message"))
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWorkers() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForStream().createGroup(STREAM_KEY, ReadOffset.from("0"), GROUP);
+        } catch (Exception e) {
+            //BUSYGROUP: group đã tồn tại
+            log.debug("Consumer group {} not created: {}", GROUP, e.getMessage());
+        }
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            String consumer = consumerName + "-" + i;
+            workerThreads.add(Thread.ofVirtual()
+                    .name("order-intake-" + i)
+                    .start(() -> runWorker(consumer)));
+        }
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        running = false;
+        workerThreads.forEach(Thread::interrupt);
+    }
+
+    private void runWorker(String consumer) {
+        //đọc lại các message đã giao cho consumer này mà chưa ack (pod restart), sau đó mới đọc message mới
+        ReadOffset offset = ReadOffset.from("0");
+        long nextClaim = 0;
+        while (running) {
+            try {
+                if (System.currentTimeMillis() >= nextClaim) {
+                    nextClaim = System.currentTimeMillis() + claimIntervalMillis;
+                    claimIdle(consumer);
+                }
+                List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
+                        Consumer.from(GROUP, consumer),
+                        StreamReadOptions.empty().count(batchSize).block(Duration.ofSeconds(1)),
+                        StreamOffset.create(STREAM_KEY, offset));
+                if (records == null || records.isEmpty()) {
+                    offset = ReadOffset.lastConsumed();
+                    continue;
+                }
+                process(records);
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Order intake worker {} failed, retrying: {}", consumer, e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    //nhận message mà consumer khác (pod đã chết, đổi HOSTNAME) giữ quá claim-min-idle-ms chưa ack
+    private void claimIdle(String consumer) {
+        PendingMessages pendingMessages = redisTemplate.opsForStream()
+                .pending(STREAM_KEY, GROUP, Range.unbounded(), batchSize * 10L);
+        List<RecordId> idleIds = new ArrayList<>();
+        for (PendingMessage pendingMessage : pendingMessages) {
+            if (!consumer.equals(pendingMessage.getConsumerName())
+                    && pendingMessage.getElapsedTimeSinceLastDelivery().compareTo(claimMinIdle) >= 0) {
+                idleIds.add(pendingMessage.getId());
+            }
+        }
+        for (int from = 0; from < idleIds.size(); from += batchSize) {
+            RecordId[] ids = idleIds.subList(from, Math.min(from + batchSize, idleIds.size()))
+                    .toArray(new RecordId[0]);
+            //XCLAIM kiểm tra lại min-idle nên 2 worker không cùng nhận 1 message
+            List<MapRecord<String, Object, Object>> claimed = redisTemplate.opsForStream()
+                    .claim(STREAM_KEY, GROUP, consumer, claimMinIdle, ids);
+            if (!claimed.isEmpty()) {
+                log.info("Order intake worker {} claimed {} idle messages", consumer, claimed.size());
+                process(claimed);
+            }
+        }
+        List<String> deadConsumers = redisTemplate.opsForStream().consumers(STREAM_KEY, GROUP).stream()
+                .filter(info -> !consumer.equals(info.consumerName()) && info.pendingCount() == 0
+                        && info.idleTimeMs() > DEAD_CONSUMER_IDLE.toMillis())
+                .map(StreamInfo.XInfoConsumer::consumerName)
+                .toList();
+        deadConsumers.forEach(deadConsumer -> redisTemplate.opsForStream()
+                .deleteConsumer(STREAM_KEY, Consumer.from(GROUP, deadConsumer)));
+    }
+
+    private void process(List<MapRecord<String, Object, Object>> records) {
+        List<String> tickets = new ArrayList<>();
+        List<OrderDTO> orderDTOs = new ArrayList<>();
+        List<RecordId> recordIds = new ArrayList<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            recordIds.add(record.getId());
+            String ticket = (String) record.getValue().get("ticket");
+            Object status = redisTemplate.opsForHash().get(STATUS_KEY_PREFIX + ticket, "status");
+            if (COMMITTED.equals(status) || FAILED.equals(status)) {
+                continue;
+            }
+            try {
+                OrderDTO orderDTO = objectMapper.readValue((String) record.getValue().get("order"), OrderDTO.class);
+                orderDTO.setIntakeTicket(ticket);
+                orderDTOs.add(orderDTO);
+                tickets.add(ticket);
+            } catch (Exception e) {
+                writeStatus(ticket, FAILED, null, "Invalid order payload");
+            }
+        }
+        if (!orderDTOs.isEmpty()) {
+            List<OrderCreationResult> results;
+            try {
+                results = orderService.createOrders(orderDTOs);
+            } catch (Exception e) {
+                // lỗi DB làm rollback cả lô -> chạy lại từng đơn để cô lập đơn lỗi
+                log.warn("Order intake batch of {} failed, retrying one by one: {}", orderDTOs.size(), e.getMessage());
+                results = orderDTOs.stream().map(this::createIndividually).toList();
+            }
+            for (int i = 0; i < results.size(); i++) {
+                OrderCreationResult result = results.get(i);
+                if (result.isSuccess()) {
+                    writeStatus(tickets.get(i), COMMITTED, result.order().getId(), null);
+                    continue;
+                }
+                //trùng unique ticket: worker khác vừa commit cùng message, đơn đó mới là kết quả
+                Optional<Order> committedOrder = orderRepository.findByIntakeTicket(tickets.get(i));
+                if (committedOrder.isPresent()) {
+                    writeStatus(tickets.get(i), COMMITTED, committedOrder.get().getId(), null);
+                } else {
+                    writeStatus(tickets.get(i), FAILED, null, result.error().getMessage());
+                }
+            }
+        }
+        RecordId[] ids = recordIds.toArray(new RecordId[0]);
+        redisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP, ids);
+        redisTemplate.opsForStream().delete(STREAM_KEY, ids);
+    }
+
+    private OrderCreationResult createIndividually(OrderDTO orderDTO) {
+        try {
+            return orderService.createOrders(List.of(orderDTO)).get(0);
+        } catch (Exception e) {
+            return OrderCreationResult.failure(e);
+        }
+    }
+
+    private void writeStatus(String ticket, String status, Long orderId, String message) {
+        String key = STATUS_KEY_PREFIX + ticket;
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("status", status);
+        if (orderId != null) {
+            fields.put("order_id", orderId.toString());
+        }
+        if (message != null) {
+            fields.put("message", message);
+        }
+        redisTemplate.opsForHash().putAll(key, fields);
+        redisTemplate.expire(key, statusTtl);
+    }
+}
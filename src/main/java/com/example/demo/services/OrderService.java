@@ -1,20 +1,25 @@
 package com.example.demo.services;
 
+import com.example.demo.components.OrderStatusIndex;
 import com.example.demo.dtos.CartItemDTO;
 import com.example.demo.dtos.OrderDTO;
 import com.example.demo.exceptions.DataNotFoundException;
 import com.example.demo.exceptions.InvalidParamException;
 import com.example.demo.models.Order;
 import com.example.demo.models.OrderDetail;
+import com.example.demo.models.OrderStatus;
+import com.example.demo.models.OrderStatusHistory;
 import com.example.demo.models.Product;
 import com.example.demo.models.User;
 import com.example.demo.repositories.OrderDetailRepository;
 import com.example.demo.repositories.OrderRepository;
+import com.example.demo.repositories.OrderStatusHistoryRepository;
 import com.example.demo.repositories.ProductRepository;
 import com.example.demo.repositories.UserRepository;
+import com.example.demo.responses.OrderDetailResponse;
 import com.example.demo.responses.OrderResponse;
+import com.example.demo.untils.TransactionUtils;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -24,87 +29,166 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService implements IOrderService{
     private final UserRepository userRepository;
     private final OrderRepository orderRepository;
-    private final ModelMapper modelMapper;
     private final ProductRepository productRepository;
     private final OrderDetailRepository orderDetailRepository;
+    private final OrderStatusHistoryRepository orderStatusHistoryRepository;
+    private final ISalesAnalyticsService salesAnalyticsService;
+    private final IOrderStatusService orderStatusService;
+    private final IOrderHistoryCacheService orderHistoryCache;
+    private final OrderStatusIndex orderStatusIndex;
 
     @Override
     @Transactional
     public Order createOrder(OrderDTO orderDTO) throws Exception {
-        User user = userRepository
-                .findById(orderDTO.getUserId())
-                .orElseThrow(() -> new DataNotFoundException("Cannot find user with id: " + orderDTO.getUserId()));
-        //convert orderDTO => Order
-        //dùng thư viện Model Mapper
-        // Tạo một luồng bảng ánh xạ riêng để kiểm soát việc ánh xạ
-        modelMapper.typeMap(OrderDTO.class, Order.class)
-                .addMappings(mapper -> mapper.skip(Order::setId));
-        // Cập nhật các trường của đơn hàng từ orderDTO
-        Order order = new Order();
-        modelMapper.map(orderDTO, order);
-        order.setUser(user);
-        order.setOrderDate(LocalDate.now());//lấy thời điểm hiện tại
-        order.setStatus("pending");
+        OrderCreationResult result = createOrders(List.of(orderDTO)).get(0);
+        if (!result.isSuccess()) {
+            throw result.error();
+        }
+        return result.order();
+    }
+
+    /**
+     * Creates many orders in one transaction: users and products are loaded with one query each,
+     * products are locked (in id order) for the stock check, details go out as batched inserts.
+     * An order that fails validation is reported in its own result and leaves nothing behind;
+     * the others are still written. Unexpected database errors roll back the whole batch.
+     */
+    @Override
+    @Transactional
+    public List<OrderCreationResult> createOrders(List<OrderDTO> orderDTOs) {
+        Map<Long, User> users = userRepository.findAllById(orderDTOs.stream()
+                        .map(OrderDTO::getUserId)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        List<Long> productIds = orderDTOs.stream()
+                .filter(orderDTO -> orderDTO.getCartItems() != null)
+                .flatMap(orderDTO -> orderDTO.getCartItems().stream())
+                .map(CartItemDTO::getProductId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .toList();
+        //ticket đã có đơn (worker chạy lại sau crash / claim): trả đơn cũ, không tạo thêm
+        Set<String> intakeTickets = orderDTOs.stream()
+                .map(OrderDTO::getIntakeTicket)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Order> committedOrders = intakeTickets.isEmpty() ? Map.of() : orderRepository
+                .findByIntakeTicketIn(intakeTickets)
+                .stream()
+                .collect(Collectors.toMap(Order::getIntakeTicket, Function.identity()));
+        Map<Long, Product> products = productIds.isEmpty() ? Map.of() : productRepository
+                .findProductsByIdsForUpdate(productIds)
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<OrderCreationResult> results = new ArrayList<>();
+        List<Order> orders = new ArrayList<>();
+        for (OrderDTO orderDTO : orderDTOs) {
+            Order committedOrder = orderDTO.getIntakeTicket() == null
+                    ? null : committedOrders.get(orderDTO.getIntakeTicket());
+            if (committedOrder != null) {
+                results.add(OrderCreationResult.success(committedOrder));
+                continue;
+            }
+            try {
+                Order order = prepareOrder(orderDTO, users, products);
+                orders.add(order);
+                results.add(OrderCreationResult.success(order));
+            } catch (Exception e) {
+                results.add(OrderCreationResult.failure(e));
+            }
+        }
+        if (orders.isEmpty()) {
+            return results;
+        }
+        // orders dùng IDENTITY nên insert từng dòng; order_details (cascade) và update tồn kho được batch lúc flush
+        orderRepository.saveAll(orders);
+        for (Order order : orders) {
+            salesAnalyticsService.recordOrder(order, order.getOrderDetails());
+        }
+        orderStatusService.recordCreated(orders);
+        //write-through: sau commit đẩy đơn mới lên đầu list cache lịch sử của user
+        List<OrderResponse> createdOrders = orders.stream()
+                .map(OrderResponse::fromOrderWithDetails)
+                .toList();
+        TransactionUtils.afterCommit(() -> createdOrders
+                .forEach(order -> orderHistoryCache.pushCreated(order.getUserId(), order)));
+        return results;
+    }
+
+    //kiểm tra toàn bộ đơn trước, chỉ trừ tồn kho khi đơn hợp lệ
+    private Order prepareOrder(OrderDTO orderDTO,
+                               Map<Long, User> users,
+                               Map<Long, Product> products) throws Exception {
+        User user = users.get(orderDTO.getUserId());
+        if (user == null) {
+            throw new DataNotFoundException("Cannot find user with id: " + orderDTO.getUserId());
+        }
         //Kiểm tra shipping date phải >= ngày hôm nay
         LocalDate shippingDate = orderDTO.getShippingDate() == null
                 ? LocalDate.now() : orderDTO.getShippingDate();
         if (shippingDate.isBefore(LocalDate.now())) {
             throw new DataNotFoundException("Date must be at least today !");
         }
+        List<CartItemDTO> cartItems = orderDTO.getCartItems() == null ? List.of() : orderDTO.getCartItems();
+        if (cartItems.size() != cartItems.stream().map(CartItemDTO::getProductId).distinct().count()) {
+            throw new InvalidParamException("Duplicate data");
+        }
+        for (CartItemDTO cartItemDTO : cartItems) {
+            Long productId = cartItemDTO.getProductId();
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new DataNotFoundException("Product not found with id: " + productId);
+            }
+            if (cartItemDTO.getQuantity() <= 0 || product.getAvailable() < cartItemDTO.getQuantity()) {
+                throw new InvalidParamException("Insufficient quantity with id: " + productId);
+            }
+        }
+
+        //convert orderDTO => Order
+        Order order = new Order();
+        copyOrderFields(orderDTO, order);
+        order.setUser(user);
+        order.setOrderDate(LocalDate.now());//lấy thời điểm hiện tại
+        order.setStatus(OrderStatus.PENDING.getCode());
         order.setShippingDate(shippingDate);
         order.setActive(true);//đoạn này nên set sẵn trong sql
-        order.setTotalMoney(orderDTO.getTotalMoney());
-        orderRepository.save(order);
-        // Tạo danh sách các đối tượng OrderDetail từ cartItems
+        order.setIntakeTicket(orderDTO.getIntakeTicket());
         List<OrderDetail> orderDetails = new ArrayList<>();
-        List<Product> products = new ArrayList<>();
-        if (orderDTO.getCartItems().stream().count() !=
-                orderDTO.getCartItems().stream().map(CartItemDTO::getProductId).distinct().count()) {
-            throw  new InvalidParamException("Duplicate data");
-        }
-        for (CartItemDTO cartItemDTO : orderDTO.getCartItems()) {
-            // Tạo một đối tượng OrderDetail từ CartItemDTO
+        float totalMoney = 0;
+        for (CartItemDTO cartItemDTO : cartItems) {
+            Product product = products.get(cartItemDTO.getProductId());
+            // product là entity managed nên các đơn sau trong cùng lô thấy tồn kho đã trừ
+            product.setAvailable(product.getAvailable() - cartItemDTO.getQuantity());
             OrderDetail orderDetail = new OrderDetail();
             orderDetail.setOrder(order);
-
-            // Lấy thông tin sản phẩm từ cartItemDTO
-            Long productId = cartItemDTO.getProductId();
-            float quantityNew = cartItemDTO.getQuantity();
-
-            // Tìm thông tin sản phẩm từ cơ sở dữ liệu (hoặc sử dụng cache nếu cần)
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new DataNotFoundException("Product not found with id: " + productId));
-
-            // Đặt thông tin cho OrderDetail
             orderDetail.setProduct(product);
-            //Kiểm tra quantity product
-            float quantityOld = cartItemDTO.getQuantity();
-            if (quantityOld <= quantityNew) {
-                throw new InvalidParamException("Insufficient quantity with id: " + productId);
-            } else {
-                product.setAvailable(quantityOld - quantityNew);
-                products.add(product);
-            }
-            orderDetail.setNumberOfProducts(quantityNew);
-            // Các trường khác của OrderDetail nếu cần
+            orderDetail.setNumberOfProducts(cartItemDTO.getQuantity());
             orderDetail.setPrice(product.getPrice());
-
-            // Thêm OrderDetail vào danh sách
+            orderDetail.setTotalMoney(product.getPrice() * cartItemDTO.getQuantity());
+            totalMoney += orderDetail.getTotalMoney();
             orderDetails.add(orderDetail);
         }
-
-
-        // Lưu danh sách Product vào cơ sở dữ liệu
-        productRepository.saveAll(products);
-        // Lưu danh sách OrderDetail vào cơ sở dữ liệu
-        orderDetailRepository.saveAll(orderDetails);
+        //có cart_items thì tổng tiền là giá đã ghi vào order_details (giá trên dòng product đang khoá)
+        if (!cartItems.isEmpty()) {
+            order.setTotalMoney(totalMoney);
+        }
+        order.setOrderDetails(orderDetails);
         return order;
     }
 
@@ -120,25 +204,176 @@ public class OrderService implements IOrderService{
                 new DataNotFoundException("Cannot find order with id: " + id));
         User existingUser = userRepository.findById(orderDTO.getUserId()).orElseThrow(() ->
                 new DataNotFoundException("Cannot find user with id: " + id));
-        modelMapper.typeMap(OrderDTO.class, Order.class)
-                .addMappings(mapper -> mapper.skip(Order::setId));
-        modelMapper.map(orderDTO, order);
+        Long oldUserId = order.getUser().getId();
+        String oldStatus = order.getStatus();
+        Float oldTotalMoney = order.getTotalMoney();
+        copyOrderFields(orderDTO, order);
         order.setUser(existingUser);
-        return orderRepository.save(order);
+        Order savedOrder = orderRepository.save(order);
+        salesAnalyticsService.recordOrderUpdate(savedOrder, oldStatus, oldTotalMoney);
+        TransactionUtils.afterCommit(() -> orderHistoryCache.evict(List.of(oldUserId, existingUser.getId())));
+        return savedOrder;
+    }
+
+    //map tay OrderDTO -> Order: không reflection, không trạng thái dùng chung giữa các request
+    //id, user, order_date do service tự set; status chỉ đổi qua OrderStatusService
+    private void copyOrderFields(OrderDTO orderDTO, Order order) {
+        order.setFullName(orderDTO.getFullName());
+        order.setEmail(orderDTO.getEmail());
+        order.setPhoneNumber(orderDTO.getPhoneNumber());
+        order.setAddress(orderDTO.getAddress());
+        order.setNote(orderDTO.getNote());
+        order.setTotalMoney(orderDTO.getTotalMoney());
+        order.setShippingMethod(orderDTO.getShippingMethod());
+        order.setShippingAddress(orderDTO.getShippingAddress());
+        order.setShippingDate(orderDTO.getShippingDate());
+        order.setPaymentMethod(orderDTO.getPaymentMethod());
     }
 
     @Override
+    @Transactional
     public void deleteOrder(Long id) {
         Order order = orderRepository.findById(id).orElse(null);
-        if (order != null) {
+        //xoá lại đơn đã xoá mềm không được trừ rollup lần nữa
+        if (order != null && !Boolean.FALSE.equals(order.getActive())) {
             order.setActive(false);
             orderRepository.save(order);
+            Optional<OrderStatusHistory> created = orderStatusHistoryRepository
+                    .findFirstByOrderIdAndFromStatusIsNullOrderByChangedAtAsc(id);
+            salesAnalyticsService.recordOrderDeleted(order,
+                    created.map(OrderStatusHistory::getToStatus).orElse(null),
+                    created.map(OrderStatusHistory::getChangedAt).orElse(null));
+            Long userId = order.getUser().getId();
+            //đơn đã xoá mềm không còn được xử lý theo trạng thái
+            TransactionUtils.afterCommit(() -> {
+                orderStatusIndex.remove(id);
+                orderHistoryCache.evict(List.of(userId));
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public OrderResponse getOrderWithDetails(Long id) throws DataNotFoundException {
+        Optional<Order> existingOrder = orderRepository.findWithDetailsById(id);
+        if (existingOrder.isPresent()) {
+            return OrderResponse.fromOrderWithDetails(existingOrder.get());
         }
+        //không còn ở bảng nóng thì có thể đã được chuyển sang orders_archive
+        OrderRepository.ArchivedOrder archivedOrder = orderRepository.findArchivedById(id)
+                .orElseThrow(() -> new DataNotFoundException("Cannot find order with id: " + id));
+        return toArchivedResponses(List.of(archivedOrder)).get(0);
     }
 
+    //không readOnly: đọc primary vì kết quả được nạp vào cache, không được trễ theo replica
     @Override
-    public List<Order> findByUserId(Long userId) {
-        return orderRepository.findByUserId(userId);
+    @Transactional
+    public List<OrderResponse> findByUserId(Long userId) {
+        int window = orderHistoryCache.getWindowSize();
+        List<OrderResponse> cached = orderHistoryCache.getRange(userId, 0, window);
+        //list ngắn hơn cửa sổ nghĩa là đã chứa toàn bộ đơn của user
+        if (cached != null && cached.size() < window) {
+            return cached;
+        }
+        //version lấy trước khi đọc DB: có đơn ghi xen giữa thì put bỏ qua, không cache list cũ
+        long version = cached == null ? orderHistoryCache.beginLoad(userId) : -1;
+        // 2 query cố định: orders của user, rồi toàn bộ order_details của các order đó
+        List<Order> orders = orderRepository.findByUserId(userId);
+        List<OrderResponse> orderResponses = toResponses(orders);
+        if (cached == null) {
+            orderHistoryCache.put(userId, version, orderResponses);
+        }
+        return orderResponses;
+    }
+
+    /**
+     * One page of the user's active orders, newest first. Pages inside the cached window are
+     * served from Redis (the whole window is loaded on a miss); pages past it go to the database
+     * unless the cached list already holds every order of the user (then they are empty).
+     */
+    @Override
+    @Transactional
+    public List<OrderResponse> findByUserId(Long userId, int page, int limit) {
+        int offset = page * limit;
+        int window = orderHistoryCache.getWindowSize();
+        List<OrderResponse> cached = orderHistoryCache.getRange(userId, offset, limit);
+        if (cached != null) {
+            return cached;
+        }
+        if (offset + limit > window) {
+            return toResponses(orderRepository.findPageByUserId(userId, PageRequest.of(page, limit)));
+        }
+        long version = orderHistoryCache.beginLoad(userId);
+        List<OrderResponse> newestOrders = toResponses(orderRepository
+                .findPageByUserId(userId, PageRequest.of(0, window)));
+        orderHistoryCache.put(userId, version, newestOrders);
+        return newestOrders.subList(Math.min(offset, newestOrders.size()),
+                Math.min(offset + limit, newestOrders.size()));
+    }
+
+    //lịch sử đầy đủ: đơn còn ở bảng nóng (mới hơn) rồi tới đơn đã lưu trữ, mỗi phần 2 query
+    @Override
+    @Transactional
+    public List<OrderResponse> findOrderHistory(Long userId) {
+        List<OrderResponse> history = new ArrayList<>(findByUserId(userId));
+        List<OrderRepository.ArchivedOrder> archivedOrders = orderRepository.findArchivedByUserId(userId);
+        if (!archivedOrders.isEmpty()) {
+            history.addAll(toArchivedResponses(archivedOrders));
+        }
+        return history;
+    }
+
+    //dòng lưu trữ đọc qua projection, map tay ra response giống OrderResponse.fromOrder
+    private List<OrderResponse> toArchivedResponses(List<OrderRepository.ArchivedOrder> archivedOrders) {
+        Map<Long, List<OrderDetailResponse>> detailsByOrderId = orderDetailRepository
+                .findArchivedByOrderIds(archivedOrders.stream().map(OrderRepository.ArchivedOrder::getId).toList())
+                .stream()
+                .map(detail -> OrderDetailResponse.builder()
+                        .id(detail.getId())
+                        .orderId(detail.getOrderId())
+                        .productId(detail.getProductId())
+                        .price(detail.getPrice())
+                        .numberOfProducts(detail.getNumberOfProducts() == null ? 0 : detail.getNumberOfProducts())
+                        .totalMoney(detail.getTotalMoney())
+                        .color(detail.getColor())
+                        .build())
+                .collect(Collectors.groupingBy(OrderDetailResponse::getOrderId));
+        return archivedOrders.stream()
+                .map(order -> OrderResponse.builder()
+                        .id(order.getId())
+                        .userId(order.getUserId())
+                        .fullName(order.getFullName())
+                        .phoneNumber(order.getPhoneNumber())
+                        .email(order.getEmail())
+                        .address(order.getAddress())
+                        .note(order.getNote())
+                        .orderDate(order.getOrderDate())
+                        .status(order.getStatus())
+                        .totalMoney(order.getTotalMoney() == null ? 0 : order.getTotalMoney())
+                        .shippingMethod(order.getShippingMethod())
+                        .shippingAddress(order.getShippingAddress())
+                        .shippingDate(order.getShippingDate())
+                        .paymentMethod(order.getPaymentMethod())
+                        .orderDetails(detailsByOrderId.getOrDefault(order.getId(), List.of()))
+                        .build())
+                .toList();
+    }
+
+    private List<OrderResponse> toResponses(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        return toResponses(orders, orderDetailRepository
+                .findResponsesByOrderIds(orders.stream().map(Order::getId).toList()));
+    }
+
+    private static List<OrderResponse> toResponses(List<Order> orders, List<OrderDetailResponse> orderDetails) {
+        Map<Long, List<OrderDetailResponse>> detailsByOrderId = orderDetails.stream()
+                .collect(Collectors.groupingBy(OrderDetailResponse::getOrderId));
+        return orders.stream()
+                .map(order -> OrderResponse.fromOrder(order,
+                        detailsByOrderId.getOrDefault(order.getId(), List.of())))
+                .toList();
     }
 
     @Override
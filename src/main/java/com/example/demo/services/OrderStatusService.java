@@ -0,0 +1,166 @@
+package com.example.demo.services;
+
+import com.example.demo.components.OrderStatusIndex;
+import com.example.demo.exceptions.ConflictException;
+import com.example.demo.exceptions.DataNotFoundException;
+import com.example.demo.exceptions.InvalidParamException;
+import com.example.demo.models.Order;
+import com.example.demo.models.OrderStatus;
+import com.example.demo.models.OrderStatusHistory;
+import com.example.demo.repositories.OrderRepository;
+import com.example.demo.repositories.OrderStatusHistoryRepository;
+import com.example.demo.untils.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Validated order lifecycle transitions. Every change appends a row to {@code order_status_history}
+ * and, once the transaction commits, moves the order in the {@link OrderStatusIndex}.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderStatusService implements IOrderStatusService {
+    private final OrderRepository orderRepository;
+    private final OrderStatusHistoryRepository orderStatusHistoryRepository;
+    private final OrderStatusIndex orderStatusIndex;
+    private final ISalesAnalyticsService salesAnalyticsService;
+    private final IOrderHistoryCacheService orderHistoryCache;
+
+    //gọi trong transaction tạo đơn, sau saveAll (đã có id)
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(List<Order> orders) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderStatusHistory> history = new ArrayList<>();
+        for (Order order : orders) {
+            history.add(OrderStatusHistory.builder()
+                    .orderId(order.getId())
+                    .toStatus(order.getStatus())
+                    .changedAt(now)
+                    .build());
+        }
+        orderStatusHistoryRepository.saveAll(history);
+        TransactionUtils.afterCommit(() -> orders.forEach(order -> OrderStatus.fromCode(order.getStatus())
+                .ifPresent(status -> orderStatusIndex.put(order.getId(), status, now))));
+    }
+
+    @Override
+    @Transactional
+    public Order changeStatus(Long orderId, String status, String changedBy)
+            throws DataNotFoundException, InvalidParamException, ConflictException {
+        OrderStatus next = parse(status);
+        //khóa dòng để 2 request đổi trạng thái cùng đơn không cùng đọc trạng thái cũ
+        Order order = orderRepository.findByIdForUpdate(orderId)
+                .filter(existingOrder -> !Boolean.FALSE.equals(existingOrder.getActive()))
+                .orElseThrow(() -> new DataNotFoundException("Cannot find order with id: " + orderId));
+        OrderStatus current = parse(order.getStatus());
+        checkTransition(current, next);
+        apply(List.of(order), next, changedBy);
+        return order;
+    }
+
+    /**
+     * Moves up to {@code limit} of the oldest orders in {@code status} to {@code nextStatus} and
+     * returns them. Candidates are taken out of the index (so concurrent workers on this pod get
+     * different ids), then locked with SKIP LOCKED and re-checked against the database. Ids that
+     * are stale or held by another pod are dropped and the index is read further, so a full batch
+     * is returned while enough orders are waiting. On rollback the locked ids go back to the index.
+     */
+    @Override
+    @Transactional
+    public List<Order> claimNext(String status, String nextStatus, LocalDateTime olderThan, int limit, String changedBy)
+            throws InvalidParamException, ConflictException {
+        OrderStatus current = parse(status);
+        OrderStatus next = parse(nextStatus);
+        checkTransition(current, next);
+        List<Order> orders = new ArrayList<>();
+        List<OrderStatusIndex.Claimed> locked = new ArrayList<>();
+        while (orders.size() < limit) {
+            List<OrderStatusIndex.Claimed> claimed = orderStatusIndex.claim(current, olderThan, limit - orders.size());
+            if (claimed.isEmpty()) {
+                break;
+            }
+            List<Order> batch = orderRepository.lockByIdsAndStatus(
+                    claimed.stream().map(OrderStatusIndex.Claimed::orderId).toList(), current.getCode());
+            //id không khoá được: đã đổi trạng thái / bị xoá ở pod khác hoặc pod khác đang giữ, bỏ khỏi index luôn
+            Set<Long> batchIds = batch.stream().map(Order::getId).collect(Collectors.toSet());
+            claimed.stream().filter(claim -> batchIds.contains(claim.orderId())).forEach(locked::add);
+            orders.addAll(batch);
+        }
+        TransactionUtils.afterRollback(() -> orderStatusIndex.restore(locked));
+        apply(orders, next, changedBy);
+        return orders;
+    }
+
+    @Override
+    public List<Long> findOldest(String status, LocalDateTime olderThan, int limit) throws InvalidParamException {
+        return orderStatusIndex.oldest(parse(status), olderThan, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OrderStatusHistory> getHistory(Long orderId) {
+        List<OrderStatusHistory> history = orderStatusHistoryRepository.findByOrderId(orderId);
+        if (!history.isEmpty()) {
+            return history;
+        }
+        //đơn đã lưu trữ: lịch sử nằm ở order_status_history_archive, dựng object mới (không managed)
+        return orderStatusHistoryRepository.findArchivedByOrderId(orderId).stream()
+                .map(change -> OrderStatusHistory.builder()
+                        .id(change.getId())
+                        .orderId(change.getOrderId())
+                        .fromStatus(change.getFromStatus())
+                        .toStatus(change.getToStatus())
+                        .changedAt(change.getChangedAt())
+                        .changedBy(change.getChangedBy())
+                        .build())
+                .toList();
+    }
+
+    private void apply(List<Order> orders, OrderStatus next, String changedBy) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderStatusHistory> history = new ArrayList<>();
+        for (Order order : orders) {
+            String oldStatus = order.getStatus();
+            order.setStatus(next.getCode());
+            history.add(OrderStatusHistory.builder()
+                    .orderId(order.getId())
+                    .fromStatus(oldStatus)
+                    .toStatus(next.getCode())
+                    .changedAt(now)
+                    .changedBy(changedBy)
+                    .build());
+            salesAnalyticsService.recordOrderUpdate(order, oldStatus, order.getTotalMoney());
+        }
+        orderStatusHistoryRepository.saveAll(history);
+        //rollback thì index và cache giữ nguyên
+        TransactionUtils.afterCommit(() -> {
+            orders.forEach(order -> orderStatusIndex.put(order.getId(), next, now));
+            orderHistoryCache.evict(orders.stream().map(order -> order.getUser().getId()).toList());
+        });
+    }
+
+    //trạng thái hiện tại không cho phép bước này: 409 thay vì 500
+    private static void checkTransition(OrderStatus current, OrderStatus next) throws ConflictException {
+        if (!current.canTransitionTo(next)) {
+            throw new ConflictException("Cannot change order status from "
+                    + current.getCode() + " to " + next.getCode());
+        }
+    }
+
+    private static OrderStatus parse(String status) throws InvalidParamException {
+        return OrderStatus.fromCode(status)
+                .orElseThrow(() -> new InvalidParamException("Invalid order status: " + status));
+    }
+}
@@ -1,22 +1,155 @@
 package com.example.demo.services;
 
-import com.example.demo.responses.ProductResponse;
+import com.example.demo.components.ProductCachePolicy;
+import com.example.demo.responses.ProductListResponse;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * Product listing pages in Redis with stampede protection:
+ * <ul>
+ *     <li>concurrent misses of one key share a single load on this pod, and a short Redis lock
+ *     makes the other pods wait for that load instead of querying MySQL themselves;</li>
+ *     <li>{@link #clear()} bumps a generation number instead of deleting keys, so pages written
+ *     before the change are still served while one request per key reloads them
+ *     (stale-while-revalidate);</li>
+ *     <li>fresh pages are refreshed early with a probability that grows as they near expiry
+ *     and with the cost of the last load (XFetch), spreading reloads out over time.</li>
+ *     <li>{@link ProductCachePolicy} decides which pages are cached and their jittered TTL; every
+ *     write also records the key in a sorted set by expiry, and once {@code max-keys} or
+ *     {@code max-bytes} is exceeded the keys closest to expiry are deleted.</li>
+ * </ul>
+ * When Redis is unavailable every request loads from the database, as before the cache existed.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class ProductRedisService implements IProductRedisService{
+    private static final String KEY_PREFIX = "all_products:";
+    private static final String GENERATION_KEY = "all_products_generation";
+    private static final String LOCK_PREFIX = "lock:";
+    private static final String INDEX_KEY = "all_products_index";//zset key -> hết hạn lúc (ms)
+    private static final String SIZES_KEY = "all_products_sizes";//hash key -> số byte
+    private static final String BYTES_KEY = "all_products_bytes";
+    private static final RedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    //ghi page + cập nhật sổ key/byte + xóa bớt key sắp hết hạn nhất khi vượt ngân sách, trong 1 script
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SAVE_WITHIN_BUDGET = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[3])
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', now, 'LIMIT', 0, 100)
+            for _, k in ipairs(expired) do
+                local size = redis.call('HGET', KEYS[2], k)
+                if size then
+                    redis.call('DECRBY', KEYS[3], size)
+                    redis.call('HDEL', KEYS[2], k)
+                end
+                redis.call('ZREM', KEYS[1], k)
+            end
+            local old = redis.call('HGET', KEYS[2], KEYS[4])
+            if old then
+                redis.call('DECRBY', KEYS[3], old)
+            end
+            redis.call('SET', KEYS[4], ARGV[1], 'PX', ARGV[2])
+            redis.call('ZADD', KEYS[1], now + tonumber(ARGV[2]), KEYS[4])
+            redis.call('HSET', KEYS[2], KEYS[4], ARGV[4])
+            local bytes = redis.call('INCRBY', KEYS[3], ARGV[4])
+            local evicted = 0
+            while redis.call('ZCARD', KEYS[1]) > tonumber(ARGV[5]) or bytes > tonumber(ARGV[6]) do
+                local victim = redis.call('ZPOPMIN', KEYS[1])
+                if #victim == 0 then
+                    break
+                end
+                local size = redis.call('HGET', KEYS[2], victim[1])
+                if size then
+                    bytes = redis.call('DECRBY', KEYS[3], size)
+                    redis.call('HDEL', KEYS[2], victim[1])
+                end
+                redis.call('DEL', victim[1])
+                evicted = evicted + 1
+            end
+            return {redis.call('ZCARD', KEYS[1]), bytes, evicted}
+            """, List.class);
+
     private final RedisTemplate<String, Object> redisTemplate;
     private final ObjectMapper redisObjectMapper;
+    private final ProductCachePolicy cachePolicy;
+    private final Duration staleTtl;
+    private final double earlyRefreshBeta;
+    private final Duration lockTtl;
+    private final long lockWaitMillis;
+    private final long maxKeys;
+    private final long maxBytes;
+    private final AtomicLong cachedKeys = new AtomicLong();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final Counter evictions;
+    private final Counter bypasses;
+    private final ConcurrentHashMap<String, CompletableFuture<ProductListResponse>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    //page + thế hệ lúc nạp + mốc hết "tươi" + thời gian nạp (ms) cho XFetch
+    record CachedPage(ProductListResponse page, long generation, long freshUntil, long loadMillis) {
+    }
+
+    public ProductRedisService(RedisTemplate<String, Object> redisTemplate,
+                               ObjectMapper redisObjectMapper,
+                               ProductCachePolicy cachePolicy,
+                               MeterRegistry meterRegistry,
+                               @Value("${product.cache.stale-seconds:300}") long staleSeconds,
+                               @Value("${product.cache.early-refresh-beta:1.0}") double earlyRefreshBeta,
+                               @Value("${product.cache.lock-ttl-ms:3000}") long lockTtlMillis,
+                               @Value("${product.cache.lock-wait-ms:1000}") long lockWaitMillis,
+                               @Value("${product.cache.max-keys:20000}") long maxKeys,
+                               @Value("${product.cache.max-bytes:67108864}") long maxBytes) {
+        this.redisTemplate = redisTemplate;
+        this.redisObjectMapper = redisObjectMapper;
+        this.cachePolicy = cachePolicy;
+        this.staleTtl = Duration.ofSeconds(staleSeconds);
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.lockTtl = Duration.ofMillis(lockTtlMillis);
+        this.lockWaitMillis = lockWaitMillis;
+        this.maxKeys = maxKeys;
+        this.maxBytes = maxBytes;
+        //số key / byte theo lần ghi gần nhất của pod này (sổ chung trong Redis)
+        Gauge.builder("product.cache.keys", cachedKeys, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("product.cache.bytes", cachedBytes, AtomicLong::get).register(meterRegistry);
+        this.evictions = meterRegistry.counter("product.cache.evictions");
+        this.bypasses = meterRegistry.counter("product.cache.bypasses");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
 
     private String getKeyFrom(String keyword,
                               Long categoryId,
@@ -26,36 +159,232 @@ public class ProductRedisService implements IProductRedisService{
         Sort sort = pageRequest.getSort();
         String sortDirection = sort.getOrderFor("id")
                 .getDirection() == Sort.Direction.ASC ? "asc": "desc";
-        String key = String.format("all_products:%s:%d:%d:%d:%s",
+        String key = String.format(KEY_PREFIX + "%s:%d:%d:%d:%s",
                 keyword, categoryId, pageNumber, pageSize, sortDirection);
         return key;
     }
 
+    //không xóa key (flushAll xóa cả giỏ hàng, idempotency, stream đơn hàng): chỉ đánh dấu mọi page là cũ
     @Override
     public void clear() {
-        redisTemplate.getConnectionFactory().getConnection().flushAll();
+        try {
+            redisTemplate.opsForValue().increment(GENERATION_KEY);
+        } catch (DataAccessException e) {
+            log.warn("Cannot invalidate product listing cache: {}", e.getMessage());
+        }
     }
 
     @Override
-    public List<ProductResponse> getAllProducts(String keyword,
-                                                Long categoryId,
-                                                PageRequest pageRequest) throws JsonProcessingException {
-        String key = this.getKeyFrom(keyword, categoryId, pageRequest);
-        String json = (String) redisTemplate.opsForValue().get(key);
-        List<ProductResponse> productResponses =
-                json != null ?
-                        redisObjectMapper.readValue(json, new TypeReference<List<ProductResponse>>() {})
-                        : null;
-        return productResponses;
+    public Long currentGeneration() {
+        try {
+            Object value = redisTemplate.opsForValue().get(GENERATION_KEY);
+            return value == null ? 0L : ((Number) value).longValue();
+        } catch (DataAccessException e) {
+            log.warn("Cannot read product listing generation: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public ProductListResponse getAllProducts(String keyword,
+                                              Long categoryId,
+                                              PageRequest pageRequest,
+                                              Supplier<ProductListResponse> loader) {
+        return getListing(keyword, categoryId, pageRequest, loader).page();
     }
 
     @Override
-    public void saveAllProducts(List<ProductResponse> productResponses,
-                                String keyword,
-                                Long categoryId,
-                                PageRequest pageRequest) throws JsonProcessingException {
+    public Listing getListing(String keyword,
+                              Long categoryId,
+                              PageRequest pageRequest,
+                              Supplier<ProductListResponse> loader) {
+        if (!cachePolicy.isCacheable(keyword, categoryId, pageRequest.getPageNumber(), pageRequest.getPageSize())) {
+            bypasses.increment();
+            return new Listing(loader.get(), null);
+        }
+        boolean admitted = cachePolicy.admit(keyword);
         String key = this.getKeyFrom(keyword, categoryId, pageRequest);
-        String json = redisObjectMapper.writeValueAsString(productResponses);
-        redisTemplate.opsForValue().set(key, json);
+        CachedPage cached;
+        long generation;
+        try {
+            //1 round trip: page + thế hệ hiện tại
+            List<Object> values = redisTemplate.opsForValue().multiGet(Arrays.asList(key, GENERATION_KEY));
+            cached = parse(values == null ? null : values.get(0));
+            generation = values == null || values.get(1) == null ? 0 : ((Number) values.get(1)).longValue();
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Cannot read product listing cache, loading from database: {}", e.getMessage());
+            return new Listing(loader.get(), null);
+        }
+        if (cached == null) {
+            //keyword chưa đủ phổ biến: không ghi cache (page đã có do pod khác ghi thì vẫn đọc ở trên)
+            if (!admitted) {
+                bypasses.increment();
+                return new Listing(loader.get(), null);
+            }
+            //có thể dùng chung lượt nạp bắt đầu từ thế hệ cũ hơn: không gắn thế hệ
+            return new Listing(loadSingleFlight(key, generation, cachePolicy.freshTtl(keyword), loader), null);
+        }
+        long now = System.currentTimeMillis();
+        boolean stale = cached.generation() < generation || now >= cached.freshUntil();
+        if (stale || shouldRefreshEarly(cached, now)) {
+            refreshInBackground(key, generation, cachePolicy.freshTtl(keyword), loader);
+        }
+        //page nạp từ đúng thế hệ hiện tại: chưa có ghi nào sau đó, page còn đúng dù đã quá freshUntil
+        return new Listing(cached.page(), cached.generation() == generation ? generation : null);
+    }
+
+    //XFetch: now - loadMillis * beta * ln(rand) >= freshUntil, ln(rand) < 0 nên mốc bị kéo sớm lên
+    private boolean shouldRefreshEarly(CachedPage cached, long now) {
+        if (earlyRefreshBeta <= 0) {
+            return false;
+        }
+        double random = ThreadLocalRandom.current().nextDouble();
+        return now - cached.loadMillis() * earlyRefreshBeta * Math.log(random) >= cached.freshUntil();
+    }
+
+    private ProductListResponse loadSingleFlight(String key, long generation, Duration freshTtl,
+                                                 Supplier<ProductListResponse> loader) {
+        CompletableFuture<ProductListResponse> mine = new CompletableFuture<>();
+        CompletableFuture<ProductListResponse> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            //request khác trên pod này đang nạp đúng key này: dùng chung kết quả
+            ProductListResponse shared;
+            try {
+                shared = existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            //null: đó là lượt refresh nền đã nhường cho pod khác, tự nạp
+            return shared != null ? shared : load(key, generation, freshTtl, loader, true);
+        }
+        try {
+            ProductListResponse page = load(key, generation, freshTtl, loader, true);
+            mine.complete(page);
+            return page;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    //trả page cũ ngay, 1 request/key nạp lại ở background; pod khác đang nạp thì bỏ qua
+    private void refreshInBackground(String key, long generation, Duration freshTtl,
+                                     Supplier<ProductListResponse> loader) {
+        CompletableFuture<ProductListResponse> mine = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, mine) != null) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                mine.complete(load(key, generation, freshTtl, loader, false));
+            } catch (RuntimeException e) {
+                log.warn("Cannot refresh product listing {}: {}", key, e.getMessage());
+                mine.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        });
+    }
+
+    /**
+     * Loads the page while holding {@code lock:<key>} in Redis. If another pod holds the lock,
+     * a miss waits up to {@code lock-wait-ms} for that pod's result, then loads anyway;
+     * a background refresh just gives up (returns null).
+     */
+    private ProductListResponse load(String key, long generation, Duration freshTtl,
+                                     Supplier<ProductListResponse> loader, boolean waitForOthers) {
+        String lockKey = LOCK_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        boolean locked;
+        try {
+            locked = Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, token, lockTtl));
+        } catch (DataAccessException e) {
+            return loader.get();
+        }
+        if (!locked) {
+            if (!waitForOthers) {
+                return null;
+            }
+            ProductListResponse loadedByOthers = awaitOtherPod(key, generation);
+            if (loadedByOthers != null) {
+                return loadedByOthers;
+            }
+        }
+        try {
+            long start = System.currentTimeMillis();
+            ProductListResponse page = loader.get();
+            saveAllProducts(key, page, generation, freshTtl, System.currentTimeMillis() - start);
+            return page;
+        } finally {
+            if (locked) {
+                releaseLock(lockKey, token);
+            }
+        }
+    }
+
+    private ProductListResponse awaitOtherPod(String key, long generation) {
+        long deadline = System.currentTimeMillis() + lockWaitMillis;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(25);
+                CachedPage cached = parse(redisTemplate.opsForValue().get(key));
+                if (cached != null && cached.generation() >= generation) {
+                    return cached.page();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Cannot read product listing cache while waiting: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    //page được ghi kèm thế hệ lúc bắt đầu nạp: clear() xảy ra giữa chừng thì page này vẫn bị coi là cũ
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void saveAllProducts(String key, ProductListResponse page, long generation,
+                                 Duration freshTtl, long loadMillis) {
+        try {
+            long now = System.currentTimeMillis();
+            CachedPage cached = new CachedPage(page, generation, now + freshTtl.toMillis(), loadMillis);
+            //mã hóa giống value serializer của redisTemplate (chuỗi JSON) để đường đọc không đổi
+            String value = redisObjectMapper.writeValueAsString(redisObjectMapper.writeValueAsString(cached));
+            long size = value.getBytes(StandardCharsets.UTF_8).length + key.length();
+            //tham số là chuỗi thô; kết quả là mảng số nguyên nên result serializer không được dùng tới
+            List<?> result = redisTemplate.execute(SAVE_WITHIN_BUDGET,
+                    StringRedisSerializer.UTF_8, (RedisSerializer) StringRedisSerializer.UTF_8,
+                    List.of(INDEX_KEY, SIZES_KEY, BYTES_KEY, key),
+                    value,
+                    String.valueOf(freshTtl.plus(staleTtl).toMillis()),
+                    String.valueOf(now),
+                    String.valueOf(size),
+                    String.valueOf(maxKeys),
+                    String.valueOf(maxBytes));
+            if (result != null && result.size() == 3) {
+                cachedKeys.set(((Number) result.get(0)).longValue());
+                cachedBytes.set(((Number) result.get(1)).longValue());
+                evictions.increment(((Number) result.get(2)).doubleValue());
+            }
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Cannot cache product listing {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void releaseLock(String lockKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_LOCK, List.of(lockKey), token);
+        } catch (DataAccessException e) {
+            log.warn("Cannot release {}, it expires on its own: {}", lockKey, e.getMessage());
+        }
+    }
+
+    private CachedPage parse(Object value) throws JsonProcessingException {
+        //page ghi theo định dạng cũ (List<ProductResponse>) coi như miss
+        if (!(value instanceof String json) || !json.startsWith("{")) {
+            return null;
+        }
+        return redisObjectMapper.readValue(json, CachedPage.class);
     }
 }
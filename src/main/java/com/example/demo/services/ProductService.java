@@ -1,5 +1,7 @@
 package com.example.demo.services;
 
+import com.example.demo.components.CatalogVersion;
+import com.example.demo.components.CategoryDictionary;
 import com.example.demo.dtos.ProductDTO;
 import com.example.demo.dtos.ProductImageDTO;
 import com.example.demo.exceptions.DataNotFoundException;
@@ -8,15 +10,18 @@ import com.example.demo.models.Category;
 import com.example.demo.models.Product;
 import com.example.demo.models.ProductImage;
 import com.example.demo.repositories.CategoryRepository;
+import com.example.demo.repositories.ImageBlobRepository;
 import com.example.demo.repositories.ProductImageRepository;
 import com.example.demo.repositories.ProductRepository;
 import com.example.demo.responses.ProductResponse;
+import com.example.demo.untils.TransactionUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -25,12 +30,13 @@ public class ProductService implements IProductService{
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final ProductImageRepository productImageRepository;
+    private final ImageBlobRepository imageBlobRepository;
+    private final CategoryDictionary categoryDictionary;
+    private final CatalogVersion catalogVersion;
 
     @Override
     public Product  createProduct(ProductDTO productDTO) throws DataNotFoundException {
-        Category existingCategory = categoryRepository.findById(productDTO.getCategoryId())
-                .orElseThrow(() -> new DataNotFoundException(
-                        "Cannot find category with id: " + productDTO.getCategoryId()));
+        Category existingCategory = getCategoryReference(productDTO.getCategoryId());
         Product newProduct = Product.builder()
                 .name(productDTO.getName())
                 .price(productDTO.getPrice())
@@ -38,10 +44,21 @@ public class ProductService implements IProductService{
                 .description(productDTO.getDescription())
                 .category(existingCategory)
                 .build();
-        return productRepository.save(newProduct);
+        Product savedProduct = productRepository.save(newProduct);
+        catalogVersion.bump();
+        return savedProduct;
+    }
+
+    //kiểm tra category qua CategoryDictionary, chỉ hỏi DB khi snapshot chưa thấy (category vừa tạo ở pod khác)
+    private Category getCategoryReference(Long categoryId) throws DataNotFoundException {
+        if (categoryDictionary.findById(categoryId).isEmpty() && !categoryRepository.existsById(categoryId)) {
+            throw new DataNotFoundException("Cannot find category with id: " + categoryId);
+        }
+        return categoryRepository.getReferenceById(categoryId);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Product getProductById(Long id) throws DataNotFoundException {
 //        Optional<Product> optionalProduct = productRepository.getDetailProduct(id);
 //        if(optionalProduct.isPresent()) {
@@ -53,6 +70,7 @@ public class ProductService implements IProductService{
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<ProductResponse> getAllProducts(
             String keyword,
             Long categoryId,
@@ -67,17 +85,14 @@ public class ProductService implements IProductService{
     @Transactional
     public Product updateProduct(Long id, ProductDTO productDTO) throws DataNotFoundException {
         Product existingProduct = getProductById(id);
-        Category existingCategory = categoryRepository
-                .findById(productDTO.getCategoryId())
-                .orElseThrow(() ->
-                        new DataNotFoundException(
-                                "Cannot find category with id: "+productDTO.getCategoryId()));
+        Category existingCategory = getCategoryReference(productDTO.getCategoryId());
         if (existingProduct != null) {
             existingProduct.setName(productDTO.getName());
             existingProduct.setCategory(existingCategory);
             existingProduct.setPrice(productDTO.getPrice());
             existingProduct.setDescription(productDTO.getDescription());
             existingProduct.setThumbnail(productDTO.getThumbnail());
+            TransactionUtils.afterCommit(catalogVersion::bump);
             return productRepository.save(existingProduct);
         }
         return null;
@@ -87,7 +102,13 @@ public class ProductService implements IProductService{
     @Transactional
     public void deleteProduct(Long id) {
         Optional<Product> optionalProduct = productRepository.findById(id);
-        optionalProduct.ifPresent(productRepository::delete);
+        optionalProduct.ifPresent(product -> {
+            // ảnh bị xóa theo cascade, trả lại tham chiếu để GC dọn blob
+            productImageRepository.findByProductId(product.getId())
+                    .forEach(productImage -> imageBlobRepository.adjustRefCount(productImage.getImageUrl(), -1));
+            productRepository.delete(product);
+            TransactionUtils.afterCommit(catalogVersion::bump);
+        });
     }
 
     @Override
@@ -110,12 +131,41 @@ public class ProductService implements IProductService{
                 .imageUrl(productImageDTO.getImageUrl())
                 .build();
         //Ko cho insert quá 5 ảnh cho 1 sản phẩm
-        int size = productImageRepository.findByProductId(productId).size();
+        long size = productImageRepository.countByProductId(productId);
         if(size >= ProductImage.MAXIMUM_IMAGES_PER_PRODUCT) {
             throw new InvalidParamException(
                     "Number of images must be <= "
                             + ProductImage.MAXIMUM_IMAGES_PER_PRODUCT);
         }
+        imageBlobRepository.adjustRefCount(newProductImage.getImageUrl(), 1);
         return productImageRepository.save(newProductImage);
     }
+
+    @Override
+    public long countProductImages(Long productId) {
+        return productImageRepository.countByProductId(productId);
+    }
+
+    @Override
+    @Transactional
+    public List<ProductImage> createProductImages(
+            Long productId,
+            List<ProductImageDTO> productImageDTOs) throws Exception {
+        //chỉ đếm 1 lần cho cả lô ảnh, product lấy dạng reference nên không query lại
+        long size = productImageRepository.countByProductId(productId);
+        if (size + productImageDTOs.size() > ProductImage.MAXIMUM_IMAGES_PER_PRODUCT) {
+            throw new InvalidParamException(
+                    "Number of images must be <= "
+                            + ProductImage.MAXIMUM_IMAGES_PER_PRODUCT);
+        }
+        Product product = productRepository.getReferenceById(productId);
+        List<ProductImage> newProductImages = productImageDTOs.stream()
+                .map(productImageDTO -> ProductImage.builder()
+                        .product(product)
+                        .imageUrl(productImageDTO.getImageUrl())
+                        .build())
+                .toList();
+        newProductImages.forEach(productImage -> imageBlobRepository.adjustRefCount(productImage.getImageUrl(), 1));
+        return productImageRepository.saveAll(newProductImages);
+    }
 }
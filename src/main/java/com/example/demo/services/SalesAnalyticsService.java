@@ -0,0 +1,249 @@
+package com.example.demo.services;
+
+import com.example.demo.exceptions.InvalidParamException;
+import com.example.demo.models.Order;
+import com.example.demo.models.OrderDetail;
+import com.example.demo.models.OrderStatus;
+import com.example.demo.models.Product;
+import com.example.demo.models.SalesRollup;
+import com.example.demo.repositories.SalesRollupRepository;
+import com.example.demo.responses.SalesRollupResponse;
+import com.example.demo.responses.SalesSummaryResponse;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains pre-aggregated sales buckets in {@code sales_rollups}.
+ * Daily buckets are keyed by {@code orders.order_date}; hourly buckets record order intake
+ * at creation time only, since orders carry no time-of-day column to backfill from.
+ * Cancelled orders are taken out of the product/category buckets and out of the revenue summary
+ * (and put back if they are reopened); soft-deleted orders are taken out of every bucket.
+ */
+@Service
+@RequiredArgsConstructor
+public class SalesAnalyticsService implements ISalesAnalyticsService {
+    private static final Logger logger = LoggerFactory.getLogger(SalesAnalyticsService.class);
+    private final SalesRollupRepository salesRollupRepository;
+
+    @Value("${analytics.rebuild-days:2}")
+    private int rebuildDays;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOrder(Order order, List<OrderDetail> orderDetails) {
+        LocalDateTime day = order.getOrderDate().atStartOfDay();
+        LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        // gom theo product/category trước để mỗi bucket chỉ upsert 1 lần
+        Map<String, double[]> byProduct = new HashMap<>();
+        Map<String, double[]> byCategory = new HashMap<>();
+        double units = groupDetails(orderDetails, byProduct, byCategory);
+        double revenue = totalOf(order.getTotalMoney());
+        incrementBucket(SalesRollup.DAILY, day, byProduct, byCategory, order.getStatus(), revenue, units);
+        incrementBucket(SalesRollup.HOURLY, hour, byProduct, byCategory, order.getStatus(), revenue, units);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOrderUpdate(Order order, String oldStatus, Float oldTotalMoney) {
+        if (order.getOrderDate() == null || order.getStatus() == null) {
+            return;
+        }
+        if (order.getStatus().equals(oldStatus) && totalOf(order.getTotalMoney()) == totalOf(oldTotalMoney)) {
+            return;
+        }
+        LocalDateTime day = order.getOrderDate().atStartOfDay();
+        double units = order.getOrderDetails() == null ? 0 : order.getOrderDetails().stream()
+                .mapToDouble(OrderDetail::getNumberOfProducts)
+                .sum();
+        if (oldStatus != null) {
+            salesRollupRepository.increment(SalesRollup.DAILY, day, SalesRollup.DIMENSION_STATUS,
+                    oldStatus, -totalOf(oldTotalMoney), -units, -1);
+        }
+        salesRollupRepository.increment(SalesRollup.DAILY, day, SalesRollup.DIMENSION_STATUS,
+                order.getStatus(), totalOf(order.getTotalMoney()), units, 1);
+        //đơn bị hủy: trừ khỏi bucket daily theo product/category (hourly là lượng đơn vào, giữ nguyên);
+        //đơn hủy được mở lại: cộng lại
+        if (isCancelled(order.getStatus()) != isCancelled(oldStatus)) {
+            incrementDetails(SalesRollup.DAILY, day, order.getOrderDetails(), isCancelled(order.getStatus()) ? -1 : 1);
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOrderDeleted(Order order, String createdStatus, LocalDateTime createdAt) {
+        if (order.getOrderDate() == null) {
+            return;
+        }
+        LocalDateTime day = order.getOrderDate().atStartOfDay();
+        double units = order.getOrderDetails() == null ? 0 : order.getOrderDetails().stream()
+                .mapToDouble(OrderDetail::getNumberOfProducts)
+                .sum();
+        if (order.getStatus() != null) {
+            salesRollupRepository.increment(SalesRollup.DAILY, day, SalesRollup.DIMENSION_STATUS,
+                    order.getStatus(), -totalOf(order.getTotalMoney()), -units, -1);
+        }
+        //đơn đã hủy thì product/category daily đã được trừ lúc hủy
+        if (!isCancelled(order.getStatus())) {
+            incrementDetails(SalesRollup.DAILY, day, order.getOrderDetails(), -1);
+        }
+        //hourly ghi lúc tạo đơn với trạng thái lúc đó; không biết giờ tạo (đơn cũ chưa có lịch sử) thì bỏ qua
+        if (createdAt != null) {
+            LocalDateTime hour = createdAt.truncatedTo(ChronoUnit.HOURS);
+            incrementDetails(SalesRollup.HOURLY, hour, order.getOrderDetails(), -1);
+            if (createdStatus != null) {
+                salesRollupRepository.increment(SalesRollup.HOURLY, hour, SalesRollup.DIMENSION_STATUS,
+                        createdStatus, -totalOf(order.getTotalMoney()), -units, -1);
+            }
+        }
+    }
+
+    //sign = 1 cộng, -1 trừ các bucket product/category của đơn
+    private void incrementDetails(String granularity, LocalDateTime bucket, List<OrderDetail> orderDetails, int sign) {
+        if (orderDetails == null || orderDetails.isEmpty()) {
+            return;
+        }
+        Map<String, double[]> byProduct = new HashMap<>();
+        Map<String, double[]> byCategory = new HashMap<>();
+        groupDetails(orderDetails, byProduct, byCategory);
+        byProduct.forEach((key, value) -> salesRollupRepository.increment(granularity, bucket,
+                SalesRollup.DIMENSION_PRODUCT, key, sign * value[0], sign * value[1], sign));
+        byCategory.forEach((key, value) -> salesRollupRepository.increment(granularity, bucket,
+                SalesRollup.DIMENSION_CATEGORY, key, sign * value[0], sign * value[1], sign));
+    }
+
+    @Override
+    @Transactional
+    public int rebuildDaily(LocalDate from, LocalDate to) {
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.atTime(LocalTime.MAX);
+        salesRollupRepository.deleteRange(SalesRollup.DAILY, start, end);
+        int rows = salesRollupRepository.rebuildDailyByProduct(start, end)
+                + salesRollupRepository.rebuildDailyByCategory(start, end)
+                + salesRollupRepository.rebuildDailyByStatus(start, end);
+        logger.info("Rebuilt {} daily sales rollups from {} to {}", rows, from, to);
+        return rows;
+    }
+
+    // chạy lại vài ngày gần nhất để sửa lệch do ghi tay vào DB
+    @Scheduled(cron = "${analytics.rebuild-cron:0 30 2 * * *}")
+    @Transactional
+    public void rebuildRecentDays() {
+        LocalDate today = LocalDate.now();
+        rebuildDaily(today.minusDays(rebuildDays), today);
+    }
+
+    @Override
+    public SalesSummaryResponse getSummary(LocalDate from, LocalDate to) {
+        List<SalesRollup> rollups = salesRollupRepository
+                .findByGranularityAndDimensionAndBucketStartBetweenOrderByBucketStartAsc(
+                        SalesRollup.DAILY, SalesRollup.DIMENSION_STATUS,
+                        from.atStartOfDay(), to.atTime(LocalTime.MAX));
+        double revenue = 0;
+        double unitsSold = 0;
+        long orderCount = 0;
+        for (SalesRollup rollup : rollups) {
+            //bucket status = cancelled không tính vào doanh thu
+            if (isCancelled(rollup.getDimensionKey())) {
+                continue;
+            }
+            revenue += rollup.getRevenue();
+            unitsSold += rollup.getUnitsSold();
+            orderCount += rollup.getOrderCount();
+        }
+        return SalesSummaryResponse.builder()
+                .from(from)
+                .to(to)
+                .revenue(revenue)
+                .unitsSold(unitsSold)
+                .orderCount(orderCount)
+                .build();
+    }
+
+    @Override
+    public List<SalesRollupResponse> getRollups(String granularity,
+                                                String dimension,
+                                                LocalDate from,
+                                                LocalDate to) {
+        return salesRollupRepository
+                .findByGranularityAndDimensionAndBucketStartBetweenOrderByBucketStartAsc(
+                        granularity, dimension, from.atStartOfDay(), to.atTime(LocalTime.MAX))
+                .stream()
+                .map(SalesRollupResponse::fromSalesRollup)
+                .toList();
+    }
+
+    @Override
+    public List<SalesRollupResponse> getTopProducts(LocalDate date, int limit) throws InvalidParamException {
+        if (limit < 1) {
+            throw new InvalidParamException("Limit must be at least 1");
+        }
+        return salesRollupRepository
+                .findTopByBucket(SalesRollup.DAILY, SalesRollup.DIMENSION_PRODUCT,
+                        date.atStartOfDay(), PageRequest.of(0, limit))
+                .stream()
+                .map(SalesRollupResponse::fromSalesRollup)
+                .toList();
+    }
+
+    private void incrementBucket(String granularity,
+                                 LocalDateTime bucket,
+                                 Map<String, double[]> byProduct,
+                                 Map<String, double[]> byCategory,
+                                 String status,
+                                 double revenue,
+                                 double units) {
+        byProduct.forEach((key, value) -> salesRollupRepository.increment(
+                granularity, bucket, SalesRollup.DIMENSION_PRODUCT, key, value[0], value[1], 1));
+        byCategory.forEach((key, value) -> salesRollupRepository.increment(
+                granularity, bucket, SalesRollup.DIMENSION_CATEGORY, key, value[0], value[1], 1));
+        salesRollupRepository.increment(granularity, bucket, SalesRollup.DIMENSION_STATUS,
+                status, revenue, units, 1);
+    }
+
+    //trả về tổng số lượng; đồng thời gom doanh thu/số lượng theo product và category
+    private static double groupDetails(List<OrderDetail> orderDetails,
+                                       Map<String, double[]> byProduct,
+                                       Map<String, double[]> byCategory) {
+        double units = 0;
+        for (OrderDetail orderDetail : orderDetails) {
+            Product product = orderDetail.getProduct();
+            double quantity = orderDetail.getNumberOfProducts();
+            double revenue = orderDetail.getPrice() == null ? 0 : orderDetail.getPrice() * quantity;
+            units += quantity;
+            accumulate(byProduct, String.valueOf(product.getId()), revenue, quantity);
+            if (product.getCategory() != null) {
+                accumulate(byCategory, String.valueOf(product.getCategory().getId()), revenue, quantity);
+            }
+        }
+        return units;
+    }
+
+    private static boolean isCancelled(String status) {
+        return OrderStatus.CANCELLED.getCode().equalsIgnoreCase(status);
+    }
+
+    private static void accumulate(Map<String, double[]> totals, String key, double revenue, double units) {
+        double[] value = totals.computeIfAbsent(key, k -> new double[2]);
+        value[0] += revenue;
+        value[1] += units;
+    }
+
+    private static double totalOf(Float totalMoney) {
+        return totalMoney == null ? 0 : totalMoney;
+    }
+}
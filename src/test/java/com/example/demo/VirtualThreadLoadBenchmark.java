@@ -0,0 +1,151 @@
+package com.example.demo;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The same blocking load (product listings with a random keyword, so every request misses the
+ * cache and queries MySQL) against the app on platform threads and on virtual threads
+ * ({@code spring.threads.virtual.enabled}). Reports the most requests in flight on the server at
+ * once, p50/p99 latency seen by the clients and requests/sec. Runs against the datasource and
+ * Redis of the active profile and writes nothing, only when asked for:
+ * {@code mvn test -Dtest=VirtualThreadLoadBenchmark -Dbenchmark=true}
+ * <p>
+ * Pinning audit of the code the load touches: {@code CategoryDictionary.refresh} and
+ * {@code CatalogService.refreshIfStale} hold a monitor around MySQL/Redis I/O,
+ * {@code ProductCachePolicy}'s frequency sketch and {@code ImageCache} hold one for in-memory
+ * bookkeeping only. Before Java 24 a virtual thread blocking inside those monitors pinned its
+ * carrier; the build targets Java 24, where JEP 491 lets it unmount, so none of them pin.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadLoadBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadLoadBenchmark.class);
+    //vượt server.tomcat.threads.max (200) để thấy giới hạn của thread pool
+    private static final int CLIENTS = 1000;
+    private static final int REQUESTS_PER_CLIENT = 20;
+
+    record Result(String mode, int maxInFlight, double p50Millis, double p99Millis, double requestsPerSecond) {
+    }
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        List<Result> results = List.of(run(false), run(true));
+        logger.info(String.format("%-10s %10s %10s %10s %12s", "threads", "in-flight", "p50 ms", "p99 ms", "req/sec"));
+        for (Result result : results) {
+            logger.info(String.format("%-10s %10d %10.1f %10.1f %12.1f", result.mode(), result.maxInFlight(),
+                    result.p50Millis(), result.p99Millis(), result.requestsPerSecond()));
+        }
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                DemoApplication.class, InFlightFilter.class)
+                .properties("server.port=0", "spring.threads.virtual.enabled=" + virtualThreads)
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port + context.getEnvironment().getProperty("api.prefix");
+            InFlightFilter inFlight = context.getBean(InFlightFilter.class);
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            //warmup: JIT, pool kết nối, snapshot catalog
+            load(client, baseUrl, 50, 10);
+            inFlight.reset();
+
+            long start = System.nanoTime();
+            long[] latencies = load(client, baseUrl, CLIENTS, REQUESTS_PER_CLIENT);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies);
+            return new Result(mode, inFlight.max(),
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), latencies.length / seconds);
+        }
+    }
+
+    //mỗi client gửi tuần tự, trả về độ trễ (ns) của mọi request
+    private long[] load(HttpClient client, String baseUrl, int clients, int requestsPerClient) throws Exception {
+        List<Callable<long[]>> tasks = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            tasks.add(() -> {
+                long[] latencies = new long[requestsPerClient];
+                for (int j = 0; j < requestsPerClient; j++) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl
+                                    + "/products?keyword=load-" + UUID.randomUUID() + "&page=0&limit=10"))
+                            .GET()
+                            .build();
+                    long start = System.nanoTime();
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    latencies[j] = System.nanoTime() - start;
+                    assertEquals(200, response.statusCode());
+                }
+                return latencies;
+            });
+        }
+        List<long[]> perClient = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Future<long[]> future : executor.invokeAll(tasks)) {
+                perClient.add(future.get());
+            }
+        }
+        return perClient.stream().flatMapToLong(Arrays::stream).toArray();
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    //đếm số request đang được xử lý trên server, giữ giá trị lớn nhất
+    static class InFlightFilter extends OncePerRequestFilter {
+        private final AtomicInteger current = new AtomicInteger();
+        private final AtomicInteger max = new AtomicInteger();
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        FilterChain filterChain) throws ServletException, IOException {
+            max.accumulateAndGet(current.incrementAndGet(), Math::max);
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                current.decrementAndGet();
+            }
+        }
+
+        int max() {
+            return max.get();
+        }
+
+        void reset() {
+            max.set(current.get());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.configurations;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Wires {@link RoutingDataSource} the way {@link DataSourceConfig} does, over separate embedded
+ * databases that each answer with their own name, and checks which one a transaction lands on.
+ */
+class RoutingDataSourceTest {
+    private final AtomicBoolean replicaAvailable = new AtomicBoolean(true);
+    private EmbeddedDatabase primary;
+    private EmbeddedDatabase catalog;
+    private EmbeddedDatabase replica;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        catalog = database("catalog");
+        replica = database("replica");
+        RoutingDataSource routingDataSource = new RoutingDataSource(replicaAvailable::get);
+        routingDataSource.setTargetDataSources(Map.of(
+                DataSourceType.PRIMARY, primary,
+                DataSourceType.CATALOG, catalog,
+                DataSourceType.REPLICA, replica));
+        routingDataSource.setDefaultTargetDataSource(primary);
+        routingDataSource.afterPropertiesSet();
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DataSourceContextHolder.clear();
+        primary.shutdown();
+        catalog.shutdown();
+        replica.shutdown();
+    }
+
+    @Test
+    void readOnlyTransactionGoesToReplica() {
+        assertEquals("replica", currentDatabase(true));
+    }
+
+    @Test
+    void readWriteTransactionGoesToPrimary() {
+        assertEquals("primary", currentDatabase(false));
+    }
+
+    @Test
+    void readOnlyTransactionFallsBackToPrimaryWhenReplicaLags() {
+        replicaAvailable.set(false);
+        assertEquals("primary", currentDatabase(true));
+    }
+
+    @Test
+    void catalogRequestUsesReplicaThenCatalogPool() {
+        DataSourceContextHolder.set(DataSourceType.CATALOG);
+        assertEquals("replica", currentDatabase(false));
+        replicaAvailable.set(false);
+        assertEquals("catalog", currentDatabase(false));
+    }
+
+    private String currentDatabase(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+                jdbcTemplate.queryForObject("SELECT name FROM datasource_name", String.class));
+    }
+
+    private static EmbeddedDatabase database(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE datasource_name (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO datasource_name VALUES (?)", name);
+        return database;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The order lifecycle table: every (from, to) pair is checked against the allowed transitions,
+ * so adding a status or an edge without updating this table fails here.
+ */
+class OrderStatusTest {
+    private static final Map<OrderStatus, Set<OrderStatus>> ALLOWED = Map.of(
+            OrderStatus.PENDING, EnumSet.of(OrderStatus.CONFIRMED, OrderStatus.CANCELLED),
+            OrderStatus.CONFIRMED, EnumSet.of(OrderStatus.SHIPPED, OrderStatus.CANCELLED),
+            OrderStatus.SHIPPED, EnumSet.of(OrderStatus.DELIVERED),
+            OrderStatus.DELIVERED, EnumSet.noneOf(OrderStatus.class),
+            OrderStatus.CANCELLED, EnumSet.noneOf(OrderStatus.class));
+
+    @Test
+    void transitionsFollowTheLifecycleTable() {
+        for (OrderStatus from : OrderStatus.values()) {
+            assertEquals(ALLOWED.get(from), from.nextStatuses(), () -> "next statuses of " + from);
+            for (OrderStatus to : OrderStatus.values()) {
+                assertEquals(ALLOWED.get(from).contains(to), from.canTransitionTo(to), () -> from + " -> " + to);
+            }
+        }
+    }
+
+    @Test
+    void noStatusTransitionsToItself() {
+        for (OrderStatus status : OrderStatus.values()) {
+            assertFalse(status.canTransitionTo(status), () -> status + " -> " + status);
+        }
+    }
+
+    @Test
+    void onlyDeliveredAndCancelledAreTerminal() {
+        for (OrderStatus status : OrderStatus.values()) {
+            boolean terminal = status == OrderStatus.DELIVERED || status == OrderStatus.CANCELLED;
+            assertEquals(terminal, status.isTerminal(), () -> status + " terminal");
+        }
+    }
+
+    @Test
+    void fromCodeMatchesStoredCodesIgnoringCase() {
+        for (OrderStatus status : OrderStatus.values()) {
+            assertEquals(Optional.of(status), OrderStatus.fromCode(status.getCode()));
+            assertEquals(Optional.of(status), OrderStatus.fromCode(status.getCode().toUpperCase()));
+        }
+        assertTrue(OrderStatus.fromCode("unknown").isEmpty());
+        assertTrue(OrderStatus.fromCode(null).isEmpty());
+    }
+}
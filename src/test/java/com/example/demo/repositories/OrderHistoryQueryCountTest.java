@@ -0,0 +1,135 @@
+package com.example.demo.repositories;
+
+import com.example.demo.components.OrderStatusIndex;
+import com.example.demo.models.Category;
+import com.example.demo.models.Order;
+import com.example.demo.models.OrderDetail;
+import com.example.demo.models.Product;
+import com.example.demo.models.User;
+import com.example.demo.responses.OrderResponse;
+import com.example.demo.services.IOrderHistoryCacheService;
+import com.example.demo.services.IOrderService;
+import com.example.demo.services.IOrderStatusService;
+import com.example.demo.services.ISalesAnalyticsService;
+import com.example.demo.services.OrderService;
+import com.example.demo.services.ProductRedisService;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * One user's order history (orders + details, serialized as the API returns it) must load in
+ * a fixed number of statements no matter how many orders, details or products are involved.
+ * Runs {@link IOrderService#findByUserId(Long)} itself with the Redis history cache mocked as a miss.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(OrderService.class)
+class OrderHistoryQueryCountTest {
+    private static final int ORDERS = 4;
+    private static final int DETAILS_PER_ORDER = 3;
+
+    //ProductListener cần bean này khi persist Product
+    @MockitoBean
+    private ProductRedisService productRedisService;
+
+    @MockitoBean
+    private IOrderHistoryCacheService orderHistoryCacheService;
+
+    @MockitoBean
+    private ISalesAnalyticsService salesAnalyticsService;
+
+    @MockitoBean
+    private IOrderStatusService orderStatusService;
+
+    @MockitoBean
+    private OrderStatusIndex orderStatusIndex;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private IOrderService orderService;
+
+    @Test
+    void userOrderHistoryLoadsInTwoQueries() throws Exception {
+        Long userId = seedOrders();
+        // cache lịch sử trên Redis luôn miss: mọi đơn đọc từ DB
+        when(orderHistoryCacheService.getWindowSize()).thenReturn(50);
+        when(orderHistoryCacheService.getRange(anyLong(), anyInt(), anyInt())).thenReturn(null);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<OrderResponse> responses = orderService.findByUserId(userId);
+        // serialize như controller để chắc không còn lazy association nào bị chạm tới
+        JsonMapper.builder().findAndAddModules().build().writeValueAsString(responses);
+
+        assertEquals(ORDERS, responses.size());
+        assertEquals(ORDERS * DETAILS_PER_ORDER, responses.stream()
+                .mapToInt(response -> response.getOrderDetails().size())
+                .sum());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityFetchCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    private Long seedOrders() {
+        User user = entityManager.persist(User.builder()
+                .fullName("Query Count")
+                .phoneNumber("0900000000")
+                .password("secret")
+                .active(true)
+                .build());
+        Category category = entityManager.persist(Category.builder().name("phones").build());
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = entityManager.persist(Order.builder()
+                    .user(user)
+                    .fullName("Query Count")
+                    .phoneNumber("0900000000")
+                    .orderDate(LocalDate.now())
+                    .status("pending")
+                    .totalMoney(30f)
+                    .active(true)
+                    .build());
+            for (int j = 0; j < DETAILS_PER_ORDER; j++) {
+                // mỗi chi tiết 1 product riêng để N+1 theo product (nếu có) lộ ra trong số query
+                Product product = entityManager.persist(Product.builder()
+                        .name("product-" + i + "-" + j)
+                        .price(10f)
+                        .category(category)
+                        .build());
+                entityManager.persist(OrderDetail.builder()
+                        .order(order)
+                        .product(product)
+                        .price(10f)
+                        .numberOfProducts(1)
+                        .totalMoney(10f)
+                        .build());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return user.getId();
+    }
+}
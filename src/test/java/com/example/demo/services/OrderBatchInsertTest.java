@@ -0,0 +1,109 @@
+package com.example.demo.services;
+
+import com.example.demo.components.OrderStatusIndex;
+import com.example.demo.dtos.CartItemDTO;
+import com.example.demo.dtos.OrderDTO;
+import com.example.demo.models.Category;
+import com.example.demo.models.Order;
+import com.example.demo.models.Product;
+import com.example.demo.models.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A 50-line order must go out as batched inserts/updates: order_details take pooled table ids and
+ * hibernate.jdbc.batch_size is 50, so the statement count stays flat instead of growing per line.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(OrderService.class)
+class OrderBatchInsertTest {
+    private static final int LINES = 50;
+    //2 select (user, product khóa) + insert order + 1 batch details + 1 batch update tồn kho + cấp id theo lô
+    private static final int MAX_STATEMENTS = 10;
+
+    //ProductListener cần bean này khi persist/update Product
+    @MockitoBean
+    private ProductRedisService productRedisService;
+
+    @MockitoBean
+    private ISalesAnalyticsService salesAnalyticsService;
+
+    @MockitoBean
+    private IOrderStatusService orderStatusService;
+
+    @MockitoBean
+    private IOrderHistoryCacheService orderHistoryCacheService;
+
+    @MockitoBean
+    private OrderStatusIndex orderStatusIndex;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private IOrderService orderService;
+
+    @Test
+    void fiftyLineOrderIsWrittenInBatches() throws Exception {
+        User user = entityManager.persist(User.builder()
+                .fullName("Batch Insert")
+                .phoneNumber("0900000001")
+                .password("secret")
+                .active(true)
+                .build());
+        Category category = entityManager.persist(Category.builder().name("batch").build());
+        List<CartItemDTO> cartItems = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            Product product = entityManager.persist(Product.builder()
+                    .name("batch-" + i)
+                    .price(10f)
+                    .available(100f)
+                    .category(category)
+                    .build());
+            cartItems.add(new CartItemDTO(product.getId(), 2));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Order order = orderService.createOrder(OrderDTO.builder()
+                .userId(user.getId())
+                .fullName("Batch Insert")
+                .phoneNumber("0900000001")
+                .address("batch")
+                .paymentMethod("cod")
+                .shippingMethod("express")
+                .cartItems(cartItems)
+                .build());
+        // test chạy trong transaction rollback: flush để insert/update thật sự được gửi đi
+        entityManager.flush();
+
+        assertEquals(LINES, order.getOrderDetails().size());
+        assertEquals(1 + LINES, statistics.getEntityInsertCount());
+        assertEquals(LINES, statistics.getEntityUpdateCount());
+        // không batch: >= 2 * LINES statement (1 insert + 1 update tồn kho mỗi dòng)
+        assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS,
+                () -> "expected batched writes, got " + statistics.getPrepareStatementCount() + " statements");
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.CartItemDTO;
+import com.example.demo.dtos.OrderDTO;
+import com.example.demo.models.Category;
+import com.example.demo.models.OrderStatus;
+import com.example.demo.models.Product;
+import com.example.demo.models.SalesRollup;
+import com.example.demo.models.User;
+import com.example.demo.repositories.CategoryRepository;
+import com.example.demo.repositories.ProductRepository;
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Orders/sec of synchronous checkout with and without group commit, at 1, 16 and 256 concurrent
+ * clients. Runs against the datasource and Redis of the active profile, like {@code DemoApplicationTests}
+ * (group commit only pays off against a real commit), and only when asked for:
+ * {@code mvn test -Dtest=OrderGroupCommitBenchmark -Dbenchmark=true}
+ * <p>
+ * Everything it writes is removed afterwards: the seeded user/category/product, their orders and
+ * status history, and the sales rollups those orders added to.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OrderGroupCommitBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(OrderGroupCommitBenchmark.class);
+    private static final int[] CLIENTS = {1, 16, 256};
+    private static final int ORDERS_PER_RUN = 2048;
+    private static final int WARMUP_ORDERS = 256;
+    private static final float PRICE = 10f;
+
+    @Autowired
+    private IOrderGroupCommitService orderGroupCommitService;
+
+    @Autowired
+    private IOrderService orderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ISalesAnalyticsService salesAnalyticsService;
+
+    @Autowired
+    private IOrderHistoryCacheService orderHistoryCacheService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long userId;
+    private Long categoryId;
+    private Long productId;
+    private LocalDate seededOn;
+
+    @BeforeEach
+    void seed() {
+        String suffix = String.valueOf(System.nanoTime() % 100_000);
+        User user = userRepository.save(User.builder()
+                .fullName("Benchmark")
+                .phoneNumber("09" + suffix)
+                .password("benchmark")
+                .active(true)
+                .build());
+        Category category = categoryRepository.save(Category.builder().name("benchmark-" + suffix).build());
+        // tồn kho đủ cho mọi lượt chạy, không đơn nào bị từ chối vì hết hàng
+        Product product = productRepository.save(Product.builder()
+                .name("benchmark-" + suffix)
+                .price(PRICE)
+                .available(1_000_000f)
+                .category(category)
+                .build());
+        userId = user.getId();
+        categoryId = category.getId();
+        productId = product.getId();
+        seededOn = LocalDate.now();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        String benchmarkOrders = "SELECT id FROM orders WHERE user_id = ?";
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            //bucket giờ theo trạng thái dùng chung với đơn thật: chỉ trừ phần benchmark đã cộng (mỗi đơn 1 sản phẩm)
+            Map<LocalDateTime, Long> ordersByHour = jdbcTemplate.queryForList(
+                            "SELECT changed_at FROM order_status_history WHERE from_status IS NULL AND order_id IN ("
+                                    + benchmarkOrders + ")", LocalDateTime.class, userId)
+                    .stream()
+                    .collect(Collectors.groupingBy(changedAt -> changedAt.truncatedTo(ChronoUnit.HOURS),
+                            Collectors.counting()));
+            ordersByHour.forEach((hour, orders) -> jdbcTemplate.update(
+                    "UPDATE sales_rollups SET revenue = revenue - ?, units_sold = units_sold - ?, " +
+                            "order_count = order_count - ? WHERE granularity = ? AND bucket_start = ? " +
+                            "AND dimension = ? AND dimension_key = ?",
+                    orders * PRICE, orders, orders, SalesRollup.HOURLY, hour,
+                    SalesRollup.DIMENSION_STATUS, OrderStatus.PENDING.getCode()));
+            //bucket theo product/category đã seed chỉ chứa đơn benchmark
+            jdbcTemplate.update("DELETE FROM sales_rollups WHERE (dimension = ? AND dimension_key = ?) " +
+                            "OR (dimension = ? AND dimension_key = ?)",
+                    SalesRollup.DIMENSION_PRODUCT, String.valueOf(productId),
+                    SalesRollup.DIMENSION_CATEGORY, String.valueOf(categoryId));
+            jdbcTemplate.update("DELETE FROM order_status_history WHERE order_id IN (" + benchmarkOrders + ")", userId);
+            jdbcTemplate.update("DELETE FROM order_details WHERE order_id IN (" + benchmarkOrders + ")", userId);
+            jdbcTemplate.update("DELETE FROM orders WHERE user_id = ?", userId);
+            productRepository.deleteById(productId);
+            categoryRepository.deleteById(categoryId);
+            userRepository.deleteById(userId);
+        });
+        //bucket ngày tính lại từ bảng đơn, lúc này không còn đơn benchmark
+        salesAnalyticsService.rebuildDaily(seededOn, LocalDate.now());
+        orderHistoryCacheService.evict(List.of(userId));
+    }
+
+    @Test
+    void ordersPerSecond() throws Exception {
+        run("warmup", 16, WARMUP_ORDERS, this::groupCommit);
+        logger.info(String.format("%-14s %8s %12s", "mode", "clients", "orders/sec"));
+        for (int clients : CLIENTS) {
+            report("direct", clients, run("direct", clients, ORDERS_PER_RUN, this::direct));
+            report("group-commit", clients, run("group-commit", clients, ORDERS_PER_RUN, this::groupCommit));
+        }
+    }
+
+    private void direct() throws Exception {
+        orderService.createOrder(orderDTO());
+    }
+
+    private void groupCommit() throws Exception {
+        orderGroupCommitService.submit(orderDTO()).get();
+    }
+
+    //trả về orders/sec; mỗi client đặt tuần tự phần đơn của mình, như 1 user bấm checkout liên tục
+    private double run(String mode, int clients, int orders, OrderPlacement action) throws Exception {
+        int perClient = orders / clients;
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            tasks.add(() -> {
+                for (int j = 0; j < perClient; j++) {
+                    action.place();
+                }
+                return perClient;
+            });
+        }
+        long start = System.nanoTime();
+        int placed = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                placed += future.get();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(perClient * clients, placed, mode + " lost orders");
+        return placed / seconds;
+    }
+
+    private static void report(String mode, int clients, double ordersPerSecond) {
+        logger.info(String.format("%-14s %8d %12.1f", mode, clients, ordersPerSecond));
+    }
+
+    private OrderDTO orderDTO() {
+        return OrderDTO.builder()
+                .userId(userId)
+                .fullName("Benchmark")
+                .phoneNumber("0900000000")
+                .address("benchmark")
+                .totalMoney(PRICE)
+                .paymentMethod("cod")
+                .shippingMethod("express")
+                .cartItems(List.of(new CartItemDTO(productId, 1)))
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface OrderPlacement {
+        void place() throws Exception;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo.services;
+
+import com.example.demo.components.OrderStatusIndex;
+import com.example.demo.models.Order;
+import com.example.demo.models.OrderStatus;
+import com.example.demo.models.User;
+import com.example.demo.repositories.OrderRepository;
+import com.example.demo.repositories.OrderStatusHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link OrderStatusService#claimNext} over a real {@link OrderStatusIndex}; the repository is mocked
+ * and reports ids in {@code staleIds} as no longer pending (changed or deleted on another pod).
+ */
+class OrderStatusServiceClaimTest {
+    private static final int ORDERS = 100;
+    private static final int BATCH = 20;
+
+    private final Set<Long> staleIds = ConcurrentHashMap.newKeySet();
+    private OrderStatusIndex orderStatusIndex;
+    private OrderStatusService orderStatusService;
+
+    @BeforeEach
+    void setUp() {
+        OrderRepository orderRepository = mock(OrderRepository.class);
+        when(orderRepository.lockByIdsAndStatus(anyList(), eq(OrderStatus.PENDING.getCode())))
+                .thenAnswer(invocation -> {
+                    List<Long> ids = invocation.getArgument(0);
+                    return ids.stream()
+                            .filter(id -> !staleIds.contains(id))
+                            .map(OrderStatusServiceClaimTest::pendingOrder)
+                            .toList();
+                });
+        orderStatusIndex = new OrderStatusIndex(orderRepository);
+        orderStatusService = new OrderStatusService(orderRepository,
+                mock(OrderStatusHistoryRepository.class),
+                orderStatusIndex,
+                mock(ISalesAnalyticsService.class),
+                mock(IOrderHistoryCacheService.class));
+        // id nhỏ hơn = vào pending sớm hơn
+        LocalDateTime base = LocalDateTime.now().minusDays(1);
+        for (long id = 1; id <= ORDERS; id++) {
+            orderStatusIndex.put(id, OrderStatus.PENDING, base.plusSeconds(id));
+        }
+    }
+
+    @Test
+    void concurrentClaimersGetDisjointBatchesOfTheOldestOrders() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<List<Long>> claimer = () -> {
+            start.await();
+            return orderStatusService.claimNext("pending", "confirmed", null, BATCH, "worker")
+                    .stream()
+                    .map(Order::getId)
+                    .toList();
+        };
+        List<Long> first;
+        List<Long> second;
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<List<Long>> firstClaim = executor.submit(claimer);
+            Future<List<Long>> secondClaim = executor.submit(claimer);
+            start.countDown();
+            first = firstClaim.get();
+            second = secondClaim.get();
+        }
+
+        // không worker nào nhận batch rỗng hay thiếu khi vẫn còn đơn chờ
+        assertEquals(BATCH, first.size());
+        assertEquals(BATCH, second.size());
+        Set<Long> claimed = new HashSet<>(first);
+        claimed.addAll(second);
+        assertEquals(2 * BATCH, claimed.size(), "an order was claimed twice");
+        assertEquals(LongStream.rangeClosed(1, 2 * BATCH).boxed().toList(), claimed.stream().sorted().toList());
+        assertEquals(List.of(2L * BATCH + 1), orderStatusIndex.oldest(OrderStatus.PENDING, null, 1));
+    }
+
+    @Test
+    void staleIdsAreSkippedAndDroppedFromTheIndex() throws Exception {
+        LongStream.rangeClosed(1, 5).forEach(staleIds::add);
+
+        List<Long> claimed = orderStatusService.claimNext("pending", "confirmed", null, BATCH, "worker")
+                .stream()
+                .map(Order::getId)
+                .toList();
+
+        assertEquals(LongStream.rangeClosed(6, 5 + BATCH).boxed().toList(), claimed);
+        List<Long> stillPending = new ArrayList<>(orderStatusIndex.oldest(OrderStatus.PENDING, null, ORDERS));
+        assertFalse(stillPending.stream().anyMatch(staleIds::contains), "stale ids still head the index");
+        assertTrue(orderStatusIndex.oldest(OrderStatus.CONFIRMED, null, ORDERS).containsAll(claimed));
+    }
+
+    private static Order pendingOrder(Long id) {
+        return Order.builder()
+                .id(id)
+                .user(User.builder().id(1L).build())
+                .status(OrderStatus.PENDING.getCode())
+                .active(true)
+                .build();
+    }
+}